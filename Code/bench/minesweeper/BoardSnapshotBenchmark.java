@@ -0,0 +1,88 @@
+package minesweeper;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de guardar y cargar una partida en el formato binario de
+ *  {@link BoardSnapshot}, sin contar el almacén.
+ *
+ * @author Haris Muneer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardSnapshotBenchmark
+{
+    /**
+     * Tamaño del tablero, filas x columnas.
+     */
+    @Param({"9x9", "16x16", "16x30", "100x100"})
+    public String size;
+
+    /**
+     * Proporción de celdas con mina.
+     */
+    @Param({"0.12", "0.16", "0.21"})
+    public double density;
+
+    private Tablero board;
+    private byte saved[];
+
+
+    //------------------------------------------------------------------//
+    @Setup
+    public void setUp()
+    {
+        String parts[] = size.split("x");
+        int rows = Integer.parseInt(parts[0]);
+        int cols = Integer.parseInt(parts[1]);
+
+        board = new Tablero((int)Math.round(rows * cols * density), rows, cols, 42);
+
+        // Half played, so the snapshot has revealed cells and flags
+        for (int i = 0; i < rows * cols; i += 2)
+        {
+            if (board.isMine(i))
+                board.setFlag(i, true);
+            else
+                board.setRevealed(i);
+        }
+
+        saved = new BoardSnapshot(board, 12345, board.getNumberOfMines()).toBytes();
+    }
+
+
+    //------------------------------------------------------------------//
+    @Benchmark
+    public byte[] save()
+    {
+        return new BoardSnapshot(board, 12345, board.getNumberOfMines()).toBytes();
+    }
+
+    @Benchmark
+    public BoardSnapshot load() throws IOException
+    {
+        return BoardSnapshot.fromBytes(saved);
+    }
+
+    @Benchmark
+    public BoardSnapshot roundTrip() throws IOException
+    {
+        return BoardSnapshot.fromBytes(new BoardSnapshot(board, 12345, board.getNumberOfMines()).toBytes());
+    }
+}
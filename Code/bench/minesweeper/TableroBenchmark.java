@@ -0,0 +1,142 @@
+package minesweeper;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de las operaciones básicas de {@link Tablero}: crear el tablero,
+ *  colocar las minas, contar las vecinas, descubrir una zona y comprobar si
+ *  se ha ganado. Se repiten para varios tamaños y densidades de minas.
+ *
+ * @author Haris Muneer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableroBenchmark
+{
+    /**
+     * Tamaño del tablero, filas x columnas.
+     */
+    @Param({"9x9", "16x16", "16x30", "100x100"})
+    public String size;
+
+    /**
+     * Proporción de celdas con mina.
+     */
+    @Param({"0.12", "0.16", "0.21"})
+    public double density;
+
+    private int rows, cols, mines;
+    private Tablero board;
+    private SplittableRandom random;
+
+    /**
+     * Celda sin minas alrededor desde la que se descubre una zona.
+     */
+    private int zero;
+
+
+    //------------------------------------------------------------------//
+    @Setup
+    public void setUp()
+    {
+        String parts[] = size.split("x");
+
+        rows = Integer.parseInt(parts[0]);
+        cols = Integer.parseInt(parts[1]);
+        mines = (int)Math.round(rows * cols * density);
+        random = new SplittableRandom(42);
+
+        // Keep a board with a zone to reveal, and start from its biggest one
+        do
+        {
+            board = new Tablero(mines, rows, cols, random.nextLong());
+            zero = -1;
+
+            int biggest = 0;
+
+            for (int i = 0; i < rows * cols; i++)
+            {
+                if (!board.isRevealed(i) && !board.isMine(i) && board.getSurroundingMines(i) == 0)
+                {
+                    int zone = board.reveal(i % cols, i / cols).length;
+
+                    if (zone > biggest)
+                    {
+                        biggest = zone;
+                        zero = i;
+                    }
+                }
+            }
+
+            board.resetBoard();
+        }
+        while (zero < 0);
+    }
+
+
+    //------------------------------------------------------------------//
+    @Benchmark
+    public Tablero construct()
+    {
+        return new Tablero(mines, rows, cols, random.nextLong());
+    }
+
+    @Benchmark
+    public Tablero setMines()
+    {
+        board.createEmptyCells();
+        board.setMines(random);
+
+        return board;
+    }
+
+    @Benchmark
+    public Tablero setSurroundingMinesNumber()
+    {
+        board.setSurroundingMinesNumber();
+
+        return board;
+    }
+
+    /**
+     * Descubre la zona de una celda sin minas alrededor. Incluye lo que tarda
+     *  {@link #resetBoard()}, que hay que restar.
+     */
+    @Benchmark
+    public int[] revealZone()
+    {
+        board.resetBoard();
+
+        return board.reveal(zero % cols, zero / cols);
+    }
+
+    @Benchmark
+    public Tablero resetBoard()
+    {
+        board.resetBoard();
+
+        return board;
+    }
+
+    @Benchmark
+    public boolean isFinished()
+    {
+        return board.isFinished(false);
+    }
+}
@@ -0,0 +1,321 @@
+package minesweeper;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+/**
+ * Almacén sobre la base de datos de Access (db.accdb) con UCanAccess, a través
+ *  de la conexión compartida de {@link Database}.
+ *
+ * @author Haris Muneer.
+ */
+public class AccessStorage implements Storage
+{
+    /**
+     * Sentencia para crear la tabla de la partida guardada, si no existe.
+     */
+    private static final String CREATE_SAVED_GAME = "CREATE TABLE SAVED_GAME (ID COUNTER PRIMARY KEY, DATA OLE)";
+
+    /**
+     * Sentencias para crear la tabla del historial y sus índices, si no existe.
+     *  La semilla va como texto porque los números de la base de datos no llegan a 64 bits.
+     */
+    private static final String CREATE_GAME_HISTORY[] = {
+        "CREATE TABLE GAME_HISTORY (ID COUNTER PRIMARY KEY, PLAYED_AT DATETIME, BOARD_ROWS LONG, BOARD_COLS LONG, "
+            + "MINES LONG, RESULT LONG, DURATION LONG, CLICKS LONG, SEED TEXT(20))",
+        "CREATE INDEX IDX_GAME_HISTORY_CONFIG ON GAME_HISTORY (BOARD_ROWS, BOARD_COLS, MINES, RESULT)",
+        "CREATE INDEX IDX_GAME_HISTORY_PLAYED_AT ON GAME_HISTORY (PLAYED_AT)"
+    };
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param dbPath Ruta de la base de datos (URL de JDBC).
+     */
+    public AccessStorage(String dbPath)
+    {
+        Database.setPath(dbPath);
+    }
+
+    @Override
+    public String getName()
+    {
+        return "access";
+    }
+
+
+    //------------POPULATE FROM DATABASE------------//
+    @Override
+    public boolean loadScore(Score score)
+    {
+        Boolean loaded = Database.query("Score.populate", (Connection connection) -> {
+            ResultSet resultSet = Database.prepare("SELECT * FROM SCORE").executeQuery();
+
+            while(resultSet.next())
+            {
+                score.gamesPlayed = resultSet.getInt("GAMES_PLAYED");
+                score.gamesWon = resultSet.getInt("GAMES_WON");
+
+                score.longestWinningStreak = resultSet.getInt("LWSTREAK");
+                score.longestLosingStreak = resultSet.getInt("LLSTREAK");
+
+                score.currentStreak = resultSet.getInt("CSTREAK");
+
+                score.currentWinningStreak = resultSet.getInt("CWSTREAK");
+                score.currentLosingStreak = resultSet.getInt("CLSTREAK");
+            }
+
+            // cleanup resources, once after processing
+            resultSet.close();
+
+
+            //------------------------LOAD TIMES------------------//
+
+            resultSet = Database.prepare("SELECT * FROM TIME").executeQuery();
+
+            while(resultSet.next())
+            {
+                int id = resultSet.getInt("ID");
+                int time = resultSet.getInt("TIME_VALUE");
+                Date date = resultSet.getDate("DATE_VALUE");
+
+                score.loadTime(id, time, date);
+            }
+
+            // cleanup resources, once after processing
+            resultSet.close();
+
+            return true;
+        });
+
+        return loaded != null;
+    }
+
+    @Override
+    public long saveScore(Score score)
+    {
+        Score.Changes changes = score.takeChanges();
+
+        if (changes.isEmpty())
+            return 0;
+
+        long millis = Database.transaction("Score.save", (Connection connection) -> {
+            //--------------UPDATE THE SCORE ROW-----------//
+            if (changes.counters)
+            {
+                String template = "UPDATE SCORE SET GAMES_PLAYED=?, GAMES_WON=?, LWSTREAK=?, LLSTREAK=?, CSTREAK=?, CWSTREAK=?, CLSTREAK=?";
+                PreparedStatement statement = Database.prepare(template);
+
+                for (int i = 0; i < changes.values.length; i++)
+                    statement.setInt(i + 1, changes.values[i]);
+
+                // The first time there's no row to update yet
+                if (statement.executeUpdate() == 0)
+                {
+                    template = "INSERT INTO SCORE (GAMES_PLAYED,GAMES_WON, LWSTREAK, LLSTREAK, CSTREAK, CWSTREAK, CLSTREAK) values (?,?,?,?,?,?,?)";
+                    statement = Database.prepare(template);
+
+                    for (int i = 0; i < changes.values.length; i++)
+                        statement.setInt(i + 1, changes.values[i]);
+
+                    statement.executeUpdate();
+                }
+            }
+
+            //---------------DELETE THE DROPPED TIMES------------//
+            PreparedStatement delete = Database.prepare("DELETE FROM TIME WHERE ID=?");
+            boolean deletes = false;
+
+            for (Score.Time time : changes.removed)
+            {
+                if (time.id > 0)
+                {
+                    delete.setInt(1, time.id);
+                    delete.addBatch();
+                    deletes = true;
+                }
+            }
+
+            if (deletes)
+                delete.executeBatch();
+
+            //-----------------INSERT THE NEW TIMES--------------//
+            PreparedStatement insert = Database.prepareWithKeys("INSERT INTO TIME (TIME_VALUE, DATE_VALUE) values (?,?)");
+
+            for (Score.Time time : changes.added)
+            {
+                insert.setInt(1, time.getTimeValue());
+                insert.setDate(2, time.getDateValue());
+                insert.executeUpdate();
+
+                ResultSet keys = insert.getGeneratedKeys();
+
+                if (keys.next())
+                    time.id = keys.getInt(1);
+
+                keys.close();
+            }
+            //---------------------------------------------------//
+        });
+
+        if (millis < 0)
+            score.restoreChanges(changes);
+
+        return millis;
+    }
+
+
+    //---------------------HISTORY-------------------------//
+    @Override
+    public boolean loadHistory(GameHistory history)
+    {
+        Boolean loaded = Database.query("loadHistory", (Connection connection) -> {
+            Database.createTable(connection, "GAME_HISTORY", CREATE_GAME_HISTORY);
+
+            String template = "SELECT PLAYED_AT, BOARD_ROWS, BOARD_COLS, MINES, RESULT, DURATION, CLICKS, SEED FROM GAME_HISTORY ORDER BY ID";
+            ResultSet resultSet = Database.prepare(template).executeQuery();
+
+            GameRecord.Result results[] = GameRecord.Result.values();
+            int skipped = 0;
+
+            while(resultSet.next())
+            {
+                Timestamp playedAt = resultSet.getTimestamp(1);
+                int result = resultSet.getInt(5);
+                boolean noResult = resultSet.wasNull();
+                Long seed = parseSeed(resultSet.getString(8));
+
+                // A damaged row is left out, so the rest of the history still loads
+                if (playedAt == null || noResult || result < 0 || result >= results.length || seed == null)
+                {
+                    skipped++;
+                    continue;
+                }
+
+                history.add(new GameRecord(playedAt.getTime(), resultSet.getInt(2), resultSet.getInt(3),
+                                           resultSet.getInt(4), results[result], resultSet.getInt(6),
+                                           resultSet.getInt(7), seed));
+            }
+
+            // cleanup resources, once after processing
+            resultSet.close();
+
+            if (skipped > 0)
+                System.out.println("Partidas del historial no válidas, no se cargan: " + skipped);
+
+            return true;
+        });
+
+        return loaded != null;
+    }
+
+    /**
+     * Lee la semilla de una partida del historial, que se guarda como texto.
+     *
+     * @param text El texto de la columna.
+     * @return La semilla, o null si la columna está vacía o no es un número.
+     */
+    private static Long parseSeed(String text)
+    {
+        try {
+            return Long.valueOf(text);
+        }
+        catch(NumberFormatException ex)
+        {
+            return null;
+        }
+    }
+
+    @Override
+    public long addGame(GameRecord record)
+    {
+        return Database.transaction("addGame", (Connection connection) -> {
+            Database.createTable(connection, "GAME_HISTORY", CREATE_GAME_HISTORY);
+
+            String template = "INSERT INTO GAME_HISTORY (PLAYED_AT, BOARD_ROWS, BOARD_COLS, MINES, RESULT, DURATION, CLICKS, SEED) values (?,?,?,?,?,?,?,?)";
+            PreparedStatement statement = Database.prepare(template);
+
+            statement.setTimestamp(1, new Timestamp(record.getPlayedAt()));
+            statement.setInt(2, record.getRows());
+            statement.setInt(3, record.getCols());
+            statement.setInt(4, record.getMines());
+            statement.setInt(5, record.getResult().ordinal());
+            statement.setInt(6, record.getDuration());
+            statement.setInt(7, record.getClicks());
+            statement.setString(8, Long.toString(record.getSeed()));
+
+            statement.executeUpdate();
+        });
+    }
+
+
+    //--------------------SAVED GAME------------------------//
+    @Override
+    public boolean hasSavedGame()
+    {
+        Boolean saveExists = Database.query("checkSave", (Connection connection) -> {
+            Database.createTable(connection, "SAVED_GAME", CREATE_SAVED_GAME);
+
+            ResultSet resultSet = Database.prepare("SELECT COUNT(*) FROM SAVED_GAME").executeQuery();
+
+            boolean exists = resultSet.next() && resultSet.getInt(1) > 0;
+
+            // cleanup resources, once after processing
+            resultSet.close();
+
+            return exists;
+        });
+
+        return saveExists != null && saveExists;
+    }
+
+    @Override
+    public byte[] loadSavedGame()
+    {
+        return Database.query("loadSaveGame", (Connection connection) -> {
+            ResultSet resultSet = Database.prepare("SELECT DATA FROM SAVED_GAME ORDER BY ID DESC").executeQuery();
+
+            byte bytes[] = null;
+
+            if (resultSet.next())
+                bytes = resultSet.getBytes("DATA");
+
+            // cleanup resources, once after processing
+            resultSet.close();
+
+            return bytes;
+        });
+    }
+
+    @Override
+    public long saveGame(byte snapshot[])
+    {
+        return Database.transaction("saveGame", (Connection connection) -> {
+            Database.createTable(connection, "SAVED_GAME", CREATE_SAVED_GAME);
+
+            PreparedStatement statement = Database.prepare("INSERT INTO SAVED_GAME (DATA) values (?)");
+
+            statement.setBytes(1, snapshot);
+            statement.executeUpdate();
+        });
+    }
+
+    @Override
+    public void deleteSavedGame()
+    {
+        Database.transaction("deleteSavedGame", (Connection connection) -> {
+            Database.prepare("DELETE FROM SAVED_GAME").executeUpdate();
+        });
+    }
+
+    @Override
+    public void close()
+    {
+        Database.close();
+    }
+}
@@ -0,0 +1,229 @@
+package minesweeper;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserva de tableros ya generados, para que empezar una partida nueva no
+ *  tenga que esperar a colocar las minas (sobre todo en los tableros sin
+ *  adivinar, que pueden tardar).
+ *
+ *  Hay una cola limitada por cada configuración (filas, columnas, minas y si
+ *  es sin adivinar). Un hilo de fondo de prioridad mínima la rellena cada vez
+ *  que se saca un tablero, y sacar uno es O(1). Si la cola está vacía el
+ *  tablero se genera en el momento y cuenta como fallo.
+ *
+ * @author Haris Muneer.
+ */
+public class BoardPool
+{
+    /**
+     * Tableros que se guardan de cada configuración.
+     */
+    private final int depth;
+
+    /**
+     * Cola de tableros de cada configuración.
+     */
+    private final Map<String, BlockingQueue<Tablero>> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Configuraciones que ya tienen un relleno pendiente en el hilo de fondo.
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Hilo de fondo que genera los tableros.
+     */
+    private final ExecutorService worker;
+
+    /**
+     * Generador del que se sacan las semillas de los tableros, solo se usa en el hilo de fondo.
+     */
+    private final SplittableRandom random = new SplittableRandom();
+
+    /**
+     * Tableros sacados de la reserva y tableros que hubo que generar en el momento.
+     */
+    private final AtomicInteger hits = new AtomicInteger(), misses = new AtomicInteger();
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param depth Tableros que se guardan de cada configuración.
+     */
+    public BoardPool(int depth)
+    {
+        this.depth = depth;
+
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "board-pool");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Saca un tablero de la reserva, o lo genera si no hay, y pide que se rellene.
+     *
+     * @param mines Número de minas.
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param noGuess TRUE si tiene que poder terminarse sin adivinar.
+     * @return Un tablero sin estrenar, o null si tiene que poder terminarse
+     *  sin adivinar y no se encuentra ninguno.
+     */
+    public Tablero take(int mines, int rows, int cols, boolean noGuess)
+    {
+        String config = configOf(mines, rows, cols, noGuess);
+        Tablero board = poolOf(config).poll();
+
+        if (board != null)
+            hits.incrementAndGet();
+        else
+        {
+            misses.incrementAndGet();
+
+            if (noGuess)
+                board = NoGuessGenerator.generate(mines, rows, cols, new SplittableRandom());
+            else
+                board = new Tablero(mines, rows, cols);
+        }
+
+        fill(mines, rows, cols, noGuess);
+
+        return board;
+    }
+
+    /**
+     * Pide al hilo de fondo que llene la reserva de una configuración.
+     *
+     * @param mines Número de minas.
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param noGuess TRUE si tienen que poder terminarse sin adivinar.
+     */
+    public void fill(int mines, int rows, int cols, boolean noGuess)
+    {
+        String config = configOf(mines, rows, cols, noGuess);
+
+        // One refill per configuration at a time, it fills the queue up
+        if (!pending.add(config) || worker.isShutdown())
+            return;
+
+        BlockingQueue<Tablero> pool = poolOf(config);
+
+        worker.execute(() -> {
+            pending.remove(config);
+
+            try
+            {
+                while (pool.remainingCapacity() > 0 && !worker.isShutdown())
+                {
+                    Tablero board = noGuess ? NoGuessGenerator.generate(mines, rows, cols, random.split())
+                                            : new Tablero(mines, rows, cols, random);
+
+                    // No board without guessing for this configuration, nothing to keep
+                    if (board == null)
+                        break;
+
+                    pool.offer(board);
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                ex.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Para el hilo de fondo. Los tableros que haya se pueden seguir sacando.
+     */
+    public void shutdown()
+    {
+        worker.shutdownNow();
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Clave de una configuración.
+     */
+    private static String configOf(int mines, int rows, int cols, boolean noGuess)
+    {
+        return GameRecord.configOf(rows, cols, mines) + (noGuess ? "/ng" : "");
+    }
+
+    /**
+     * Cola de una configuración, que se crea la primera vez.
+     */
+    private BlockingQueue<Tablero> poolOf(String config)
+    {
+        return pools.computeIfAbsent(config, k -> new ArrayBlockingQueue<>(depth));
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Getter de los tableros guardados de una configuración.
+     *
+     * @param mines Número de minas.
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param noGuess TRUE para los que se terminan sin adivinar.
+     * @return Cuántos hay listos.
+     */
+    public int getDepth(int mines, int rows, int cols, boolean noGuess)
+    {
+        BlockingQueue<Tablero> pool = pools.get(configOf(mines, rows, cols, noGuess));
+
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * Getter de las veces que había un tablero listo.
+     *
+     * @return Aciertos.
+     */
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Getter de las veces que hubo que generar el tablero en el momento.
+     *
+     * @return Fallos.
+     */
+    public int getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Resumen del estado de la reserva.
+     *
+     * @return Tableros listos de cada configuración y aciertos y fallos.
+     */
+    public String getReport()
+    {
+        StringBuilder report = new StringBuilder("Reserva de tableros:");
+
+        for (Map.Entry<String, BlockingQueue<Tablero>> e : pools.entrySet())
+            report.append(' ').append(e.getKey()).append('=').append(e.getValue().size()).append('/').append(depth);
+
+        return report.append(", aciertos ").append(hits.get())
+                .append(", fallos ").append(misses.get()).toString();
+    }
+}
@@ -0,0 +1,272 @@
+package minesweeper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Foto de una partida guardada (tablero, tiempo y minas restantes) y su
+ *  formato binario compacto, para guardarla entera en un solo campo.
+ *
+ *  Formato (versión 1):
+ *   int MAGIC, byte versión, byte opciones (bit 0: cuerpo comprimido con Deflate),
+ *   y en el cuerpo: int columnas, int filas, int minas, long semilla, int celda
+ *   de salida (-1 si no hay), int tiempo en milisegundos, int minas restantes,
+ *   y los mapas de bits de minas, descubiertas y banderas (un bit por celda en
+ *   orden de índice, redondeado a bytes).
+ *
+ * @author Haris Muneer.
+ */
+public class BoardSnapshot
+{
+    /**
+     * Marca del principio del formato ("MINE").
+     */
+    private static final int MAGIC = 0x4D494E45;
+
+    /**
+     * Versión actual del formato.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Opción que indica que el cuerpo va comprimido.
+     */
+    private static final int COMPRESSED = 0x01;
+
+    /**
+     * El tablero de la partida.
+     */
+    private final Tablero board;
+
+    /**
+     * Milisegundos de la partida.
+     */
+    private final int timer;
+
+    /**
+     * Minas restantes que se mostraban.
+     */
+    private final int mines;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param board El tablero de la partida.
+     * @param timer Milisegundos de la partida.
+     * @param mines Minas restantes que se mostraban.
+     */
+    public BoardSnapshot(Tablero board, int timer, int mines)
+    {
+        this.board = board;
+        this.timer = timer;
+        this.mines = mines;
+    }
+
+    /**
+     * Pasa la partida al formato binario, comprimido.
+     *
+     * @return Los bytes de la partida.
+     */
+    public byte[] toBytes()
+    {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(bytes);
+
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeByte(COMPRESSED);
+
+            DeflaterOutputStream deflater = new DeflaterOutputStream(bytes);
+            writeBody(new DataOutputStream(deflater));
+            deflater.finish();
+
+            return bytes.toByteArray();
+        }
+        catch(IOException ex)
+        {
+            // Can't happen writing to memory
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Lee una partida en formato binario.
+     *
+     * @param data Los bytes de la partida.
+     * @return La partida leída.
+     * @throws IOException Si los datos no tienen un formato válido.
+     */
+    public static BoardSnapshot fromBytes(byte data[]) throws IOException
+    {
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(data));
+
+        if (header.readInt() != MAGIC)
+            throw new IOException("No es una partida guardada");
+
+        int version = header.readUnsignedByte();
+
+        if (version != VERSION)
+            throw new IOException("Versión de partida guardada no soportada: " + version);
+
+        int options = header.readUnsignedByte();
+
+        InputStream body = header;
+
+        if ((options & COMPRESSED) != 0)
+            body = new InflaterInputStream(header);
+
+        return readBody(new DataInputStream(body));
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Escribe el cuerpo del formato.
+     *
+     * @param out Donde escribir.
+     * @throws IOException Si hay algún error al escribir.
+     */
+    private void writeBody(DataOutputStream out) throws IOException
+    {
+        int cells = board.getRows() * board.getCols();
+
+        out.writeInt(board.getCols());
+        out.writeInt(board.getRows());
+        out.writeInt(board.getNumberOfMines());
+        out.writeLong(board.getSeed());
+        out.writeInt(board.getStartCell());
+        out.writeInt(timer);
+        out.writeInt(mines);
+
+        byte mineBits[] = new byte[(cells + 7) / 8];
+        byte revealedBits[] = new byte[mineBits.length];
+        byte flagBits[] = new byte[mineBits.length];
+
+        for (int i = 0; i < cells; i++)
+        {
+            int bit = 1 << (i & 7);
+
+            if (board.isMine(i))
+                mineBits[i >> 3] |= bit;
+            if (board.isRevealed(i))
+                revealedBits[i >> 3] |= bit;
+            if (board.isFlagged(i))
+                flagBits[i >> 3] |= bit;
+        }
+
+        out.write(mineBits);
+        out.write(revealedBits);
+        out.write(flagBits);
+        out.flush();
+    }
+
+    /**
+     * Lee el cuerpo del formato y rehace el tablero.
+     *
+     * @param in De donde leer.
+     * @return La partida leída.
+     * @throws IOException Si los datos no tienen un formato válido.
+     */
+    private static BoardSnapshot readBody(DataInputStream in) throws IOException
+    {
+        int cols = in.readInt();
+        int rows = in.readInt();
+        int numberOfMines = in.readInt();
+        long seed = in.readLong();
+        int startCell = in.readInt();
+        int timer = in.readInt();
+        int mines = in.readInt();
+
+        if (cols <= 0 || rows <= 0 || cols > Tablero.MAX_SIDE || rows > Tablero.MAX_SIDE)
+            throw new IOException("Tamaño de tablero no válido: " + cols + "x" + rows);
+
+        if (startCell < -1 || startCell >= rows * cols)
+            throw new IOException("Celda de salida no válida: " + startCell);
+
+        int cells = rows * cols;
+
+        byte mineBits[] = new byte[(cells + 7) / 8];
+        byte revealedBits[] = new byte[mineBits.length];
+        byte flagBits[] = new byte[mineBits.length];
+
+        in.readFully(mineBits);
+        in.readFully(revealedBits);
+        in.readFully(flagBits);
+
+        int placed = 0;
+
+        for (int i = 0; i < cells; i++)
+        {
+            if ((mineBits[i >> 3] & (1 << (i & 7))) != 0)
+                placed++;
+        }
+
+        if (placed != numberOfMines)
+            throw new IOException("Número de minas no válido: " + numberOfMines + ", hay " + placed);
+
+        // An empty board (no random mines), then the saved ones
+        Tablero board = new Tablero(0, rows, cols, seed, startCell);
+
+        for (int i = 0; i < cells; i++)
+        {
+            if ((mineBits[i >> 3] & (1 << (i & 7))) != 0)
+                board.setMine(i, true);
+        }
+
+        board.setNumberOfMines(numberOfMines);
+        board.setSurroundingMinesNumber();
+
+        for (int i = 0; i < cells; i++)
+        {
+            int bit = 1 << (i & 7);
+
+            if ((revealedBits[i >> 3] & bit) != 0)
+                board.setRevealed(i);
+            else if ((flagBits[i >> 3] & bit) != 0)
+                board.setFlag(i, true);
+        }
+
+        return new BoardSnapshot(board, timer, mines);
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Getter del tablero de la partida.
+     *
+     * @return El tablero de la partida.
+     */
+    public Tablero getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Getter del tiempo de la partida.
+     *
+     * @return Los milisegundos de la partida.
+     */
+    public int getTimer()
+    {
+        return timer;
+    }
+
+    /**
+     * Getter de las minas restantes que se mostraban.
+     *
+     * @return Las minas restantes.
+     */
+    public int getMines()
+    {
+        return mines;
+    }
+}
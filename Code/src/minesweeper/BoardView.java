@@ -0,0 +1,473 @@
+package minesweeper;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Componente que pinta el tablero entero, en lugar de usar un botón por casilla.
+ *  Cada casilla se pinta con una imagen ya preparada para su estado y tamaño,
+ *  y solo se repinta la zona de las casillas que han cambiado.
+ *  Si el tablero no cabe con el tamaño mínimo de casilla, se muestra con scroll.
+ *
+ * @author Haris Muneer.
+ */
+public class BoardView extends JComponent implements Scrollable
+{
+    /**
+     * Tamaño mínimo de una casilla, en pixels.
+     */
+    private static final int MIN_CELL_SIZE = 16;
+
+    /**
+     * Imagen de una casilla sin descubrir.
+     */
+    private static final int HIDDEN = 9;
+    /**
+     * Imagen de una casilla con bandera.
+     */
+    private static final int FLAG = 10;
+    /**
+     * Imagen de una bandera mal puesta, al terminar la partida.
+     */
+    private static final int WRONG_FLAG = 11;
+    /**
+     * Imagen de una bandera bien puesta, al terminar la partida.
+     */
+    private static final int RIGHT_FLAG = 12;
+    /**
+     * Imagen de una mina sin explotar, al terminar la partida.
+     */
+    private static final int MINE = 13;
+    /**
+     * Imagen de una mina explotada.
+     */
+    private static final int RED_MINE = 14;
+
+    /**
+     * Colores de los números de minas adyacentes (el 0 no se pinta).
+     */
+    private static final Color NUMBER_COLORS[] = {
+        null, Color.blue, new Color(76,153,0), Color.red, new Color(153,0,0),
+        new Color(153,0,153), new Color(96,96,96), new Color(0,0,102), new Color(153,0,76)
+    };
+
+    /**
+     * Niveles en que se divide la probabilidad de mina para pintarla.
+     */
+    private static final int PROBABILITY_LEVELS = 64;
+
+    /**
+     * Colores de la probabilidad de mina, de verde (segura) a rojo (mina),
+     *  uno por nivel, y el último gris para las que no se sabe.
+     */
+    private static final Color PROBABILITY_COLORS[] = new Color[PROBABILITY_LEVELS + 2];
+
+    static
+    {
+        for (int k = 0; k <= PROBABILITY_LEVELS; k++)
+        {
+            float p = (float)k / PROBABILITY_LEVELS;
+            PROBABILITY_COLORS[k] = new Color(p, 1 - p, 0f, 0.45f);
+        }
+
+        PROBABILITY_COLORS[PROBABILITY_LEVELS + 1] = new Color(0.5f, 0.5f, 0.5f, 0.45f);
+    }
+
+    /**
+     * Color de la marca de la casilla de salida.
+     */
+    private static final Color START_COLOR = new Color(0f, 0.6f, 0f);
+
+    /**
+     * El tablero a pintar.
+     */
+    private Tablero board;
+
+    /**
+     * Indica si se muestra la solución (TRUE) o solo lo descubierto (FALSE).
+     */
+    private boolean showSolution;
+
+    /**
+     * Probabilidad de mina de cada casilla, para pintarla encima de las
+     *  tapadas, o null para no pintarla.
+     */
+    private double probabilities[];
+
+    /**
+     * Imágenes de las casillas, indexadas por el número (de 0 a 8) o por las
+     *  constantes HIDDEN, FLAG, etc. Se crean para el tamaño de casilla actual.
+     */
+    private Image sprites[];
+
+    /**
+     * Tamaño de casilla para el que están hechas las imágenes.
+     */
+    private int spriteSize;
+
+    /**
+     * Imágenes originales de los recursos.
+     */
+    private final Image tileImage, flagImage, mineImage, redMineImage;
+
+
+    //---------------------------------------------------------------//
+    /**
+     * Constructor.
+     */
+    public BoardView()
+    {
+        tileImage = new ImageIcon(getClass().getResource("/resources/tile.png")).getImage();
+        flagImage = new ImageIcon(getClass().getResource("/resources/flag.png")).getImage();
+        mineImage = new ImageIcon(getClass().getResource("/resources/mine.png")).getImage();
+        redMineImage = new ImageIcon(getClass().getResource("/resources/redmine.png")).getImage();
+
+        setOpaque(false);
+    }
+
+    /**
+     * Setter del tablero a pintar. Quita la solución y repinta todo.
+     *
+     * @param board El tablero a pintar.
+     */
+    public void setBoard(Tablero board)
+    {
+        this.board = board;
+        this.showSolution = false;
+        this.probabilities = null;
+
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Setter para mostrar la solución (minas y banderas bien y mal puestas).
+     *
+     * @param showSolution TRUE para mostrarla, FALSE para no hacerlo.
+     */
+    public void setShowSolution(boolean showSolution)
+    {
+        this.showSolution = showSolution;
+
+        repaint();
+    }
+
+
+    /**
+     * Setter de las probabilidades de mina a pintar sobre las casillas tapadas.
+     *
+     * @param probabilities Una probabilidad por casilla en orden de índice, o null para quitarlas.
+     */
+    public void setProbabilities(double probabilities[])
+    {
+        this.probabilities = probabilities;
+
+        repaint();
+    }
+
+
+    //---------------------------GEOMETRY------------------------------//
+    /**
+     * Tamaño de casilla con el que se pinta ahora el tablero.
+     *
+     * @return El tamaño de casilla, en pixels.
+     */
+    private int getCellSize()
+    {
+        return Math.max(MIN_CELL_SIZE, Math.min(getWidth() / board.getCols(), getHeight() / board.getRows()));
+    }
+
+    /**
+     * Desplazamiento horizontal del tablero para que quede centrado.
+     *
+     * @param cellSize Tamaño de casilla.
+     * @return El desplazamiento, en pixels.
+     */
+    private int getOffsetX(int cellSize)
+    {
+        return Math.max(0, (getWidth() - cellSize * board.getCols()) / 2);
+    }
+
+    /**
+     * Desplazamiento vertical del tablero para que quede centrado.
+     *
+     * @param cellSize Tamaño de casilla.
+     * @return El desplazamiento, en pixels.
+     */
+    private int getOffsetY(int cellSize)
+    {
+        return Math.max(0, (getHeight() - cellSize * board.getRows()) / 2);
+    }
+
+    /**
+     * Calcula la casilla que hay en un punto del componente.
+     *
+     * @param px Posición horizontal del punto.
+     * @param py Posición vertical del punto.
+     * @return Índice de la casilla en el tablero, -1 si el punto está fuera.
+     */
+    public int cellAt(int px, int py)
+    {
+        int size = getCellSize();
+
+        px -= getOffsetX(size);
+        py -= getOffsetY(size);
+
+        if (px < 0 || py < 0)
+            return -1;
+
+        int x = px / size;
+        int y = py / size;
+
+        if (x >= board.getCols() || y >= board.getRows())
+            return -1;
+
+        return board.index(x, y);
+    }
+
+    /**
+     * Repinta solo la zona ocupada por unas casillas.
+     *
+     * @param changed Índices de las casillas que han cambiado.
+     */
+    public void repaintCells(int changed[])
+    {
+        if (changed.length == 0)
+            return;
+
+        int cols = board.getCols();
+        int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE;
+        int xMax = -1, yMax = -1;
+
+        for (int i : changed)
+        {
+            int x = i % cols;
+            int y = i / cols;
+
+            xMin = Math.min(xMin, x);
+            xMax = Math.max(xMax, x);
+            yMin = Math.min(yMin, y);
+            yMax = Math.max(yMax, y);
+        }
+
+        int size = getCellSize();
+
+        repaint(getOffsetX(size) + xMin * size, getOffsetY(size) + yMin * size,
+                (xMax - xMin + 1) * size, (yMax - yMin + 1) * size);
+    }
+
+
+    //---------------------------PAINTING------------------------------//
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        if (board == null)
+            return;
+
+        int size = getCellSize();
+        int offsetX = getOffsetX(size);
+        int offsetY = getOffsetY(size);
+
+        if (size != spriteSize)
+            createSprites(size);
+
+        // Only paint the cells inside the clip
+        Rectangle clip = g.getClipBounds();
+
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+        int xMin = Math.max(0, (clip.x - offsetX) / size);
+        int yMin = Math.max(0, (clip.y - offsetY) / size);
+        int xMax = Math.min(board.getCols() - 1, (clip.x + clip.width - offsetX) / size);
+        int yMax = Math.min(board.getRows() - 1, (clip.y + clip.height - offsetY) / size);
+
+        for (int y = yMin; y <= yMax; y++)
+        {
+            for (int x = xMin; x <= xMax; x++)
+            {
+                int i = board.index(x, y);
+
+                g.drawImage(sprites[spriteOf(i)], offsetX + x * size, offsetY + y * size, null);
+
+                if (probabilities != null && !showSolution && !board.isRevealed(i) && !board.isFlagged(i))
+                {
+                    double p = probabilities[i];
+
+                    // NaN when no layout fits, shown as unknown
+                    g.setColor(PROBABILITY_COLORS[Double.isNaN(p) ? PROBABILITY_LEVELS + 1
+                                                                  : (int)Math.round(p * PROBABILITY_LEVELS)]);
+                    g.fillRect(offsetX + x * size, offsetY + y * size, size, size);
+                }
+
+                if (i == board.getStartCell() && !board.isRevealed(i) && !board.isFlagged(i))
+                {
+                    // Mark where a no-guess game has to start
+                    g.setColor(START_COLOR);
+                    g.fillOval(offsetX + x * size + size / 3, offsetY + y * size + size / 3, size / 3, size / 3);
+                }
+            }
+        }
+    }
+
+    /**
+     * Elige la imagen de una casilla según su estado.
+     *
+     * @param i Índice de la casilla.
+     * @return Índice de la imagen en sprites.
+     */
+    private int spriteOf(int i)
+    {
+        boolean mine = board.isMine(i);
+
+        if (board.isFlagged(i))
+        {
+            if (showSolution)
+                return mine ? RIGHT_FLAG : WRONG_FLAG;
+            else
+                return FLAG;
+        }
+
+        if (board.isRevealed(i))
+            return mine ? RED_MINE : board.getSurroundingMines(i);
+
+        if (showSolution)
+            return mine ? MINE : board.getSurroundingMines(i);
+
+        return HIDDEN;
+    }
+
+    /**
+     * Crea las imágenes de las casillas para un tamaño.
+     *
+     * @param size Tamaño de casilla, en pixels.
+     */
+    private void createSprites(int size)
+    {
+        sprites = new Image[15];
+
+        Font font = new Font("Serif", Font.BOLD, Math.max(10, size * 24 / 44));
+
+        for (int n = 0; n <= 8; n++)
+        {
+            Graphics2D g = startSprite(n, size, Color.lightGray);
+
+            if (n > 0)
+            {
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                g.setFont(font);
+                g.setColor(NUMBER_COLORS[n]);
+
+                FontMetrics fm = g.getFontMetrics();
+                String text = Integer.toString(n);
+
+                g.drawString(text, (size - fm.stringWidth(text)) / 2, (size - fm.getHeight()) / 2 + fm.getAscent());
+            }
+
+            endSprite(g, size);
+        }
+
+        createIconSprite(HIDDEN, size, new Color(0,103,200), tileImage);
+        createIconSprite(FLAG, size, Color.blue, flagImage);
+        createIconSprite(WRONG_FLAG, size, Color.orange, flagImage);
+        createIconSprite(RIGHT_FLAG, size, Color.green, flagImage);
+        createIconSprite(MINE, size, Color.lightGray, mineImage);
+        createIconSprite(RED_MINE, size, Color.red, redMineImage);
+
+        spriteSize = size;
+    }
+
+    /**
+     * Crea la imagen de una casilla con un icono.
+     *
+     * @param sprite Índice de la imagen.
+     * @param size Tamaño de casilla.
+     * @param background Color de fondo.
+     * @param icon Icono a pintar.
+     */
+    private void createIconSprite(int sprite, int size, Color background, Image icon)
+    {
+        Graphics2D g = startSprite(sprite, size, background);
+
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(icon, 1, 1, size - 2, size - 2, null);
+
+        endSprite(g, size);
+    }
+
+    /**
+     * Crea una imagen de casilla vacía con su fondo.
+     *
+     * @param sprite Índice de la imagen.
+     * @param size Tamaño de casilla.
+     * @param background Color de fondo.
+     * @return Graphics para seguir pintando la imagen.
+     */
+    private Graphics2D startSprite(int sprite, int size, Color background)
+    {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        sprites[sprite] = image;
+
+        Graphics2D g = image.createGraphics();
+        g.setColor(background);
+        g.fillRect(0, 0, size, size);
+
+        return g;
+    }
+
+    /**
+     * Termina una imagen de casilla pintando su borde.
+     *
+     * @param g Graphics de la imagen.
+     * @param size Tamaño de casilla.
+     */
+    private void endSprite(Graphics2D g, int size)
+    {
+        g.setColor(Color.black);
+        g.drawRect(0, 0, size - 1, size - 1);
+        g.dispose();
+    }
+
+
+    //---------------------------SCROLLABLE------------------------------//
+    @Override
+    public Dimension getPreferredSize()
+    {
+        if (board == null)
+            return super.getPreferredSize();
+
+        return new Dimension(board.getCols() * MIN_CELL_SIZE, board.getRows() * MIN_CELL_SIZE);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize()
+    {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction)
+    {
+        return MIN_CELL_SIZE;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction)
+    {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    // Stretch to the viewport while the board fits in it
+    @Override
+    public boolean getScrollableTracksViewportWidth()
+    {
+        return getParent() instanceof JViewport && getParent().getWidth() >= getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight()
+    {
+        return getParent() instanceof JViewport && getParent().getHeight() >= getPreferredSize().height;
+    }
+}
@@ -1,63 +1,57 @@
 package minesweeper;
 
 /**
- * Clase que representa a la celda.
- * 
+ * Clase que representa a la celda. Es una vista sobre una posición del tablero,
+ *  el estado real se guarda empaquetado en un byte dentro de {@link Tablero}.
+ *
  * @author Haris Muneer.
  */
-public class Cell 
+public class Cell
 {
     /**
-     * Booleano que guarda si esta celda almacena una mina (TRUE) o no (FALSE).
+     * Tablero al que pertenece la celda.
      */
-    private boolean mine;
+    private final Tablero board;
 
     /**
-     * Descripción de la celda en modo textual:
-     *  "" - Indica un valor desconocido (es un estado erroneo o inicial).
-     *  "F" - Hay una bandera.
-     *  "M" - Hay una mina.
-     *  Número de "0" a "8" - indica el número de minas de sus adyacentes.
+     * Índice de la celda dentro del tablero.
      */
-    private String content;
+    private final int index;
 
-    /**
-     * Número de minas de sus adyacentes (de 0 a 8).
-     */
-    private int surroundingMines;
 
-    
     //----------------------------------------------------------//
     /**
      * Constructor de la clase.
+     *
+     * @param board Tablero al que pertenece la celda.
+     * @param index Índice de la celda dentro del tablero.
      */
-    public Cell()
+    public Cell(Tablero board, int index)
     {
-        mine = false;
-        content = "";
-        surroundingMines = 0;
+        this.board = board;
+        this.index = index;
     }
 
 
     //-------------GETTERS AND SETTERS----------------------------//
     /**
      * Getter para saber si hay mina dentro o no.
-     * 
+     *
      * @return TRUE si tiene mina, FALSE si no la tiene.
      */
     public boolean getMine()
     {
-        return mine;
+        return board.isMine(index);
     }
 
     /**
      * Setter para guardar si tiene o no una mina.
-     * 
+     *
      * @param mine Boolean, TRUE si tiene mina, FALSE si no la tiene.
      */
     public void setMine(boolean mine)
     {
-        this.mine = mine;
+        board.setMine(index, mine);
     }
 
     /**
@@ -66,12 +60,12 @@ public class Cell
      *  "F" - una bandera.
      *  "M" - una mina.
      *  Número de "0" a "8" - indica el número de minas de sus adyacentes.
-     * 
+     *
      * @return String con el código.
      */
     public String getContent()
     {
-        return content;
+        return board.getContent(index);
     }
 
     /**
@@ -80,32 +74,42 @@ public class Cell
      *  "F" - una bandera.
      *  "M" - una mina.
      *  Número de "0" a "8" - indica el número de minas de sus adyacentes.
-     * 
+     *
      * @param content El contenido a asignar.
      */
     public void setContent(String content)
     {
-        this.content = content;
+        board.setContent(index, content);
     }
 
     /**
      * Getter para saber el número de minas de sus adyacentes.
-     * 
+     *
      * @return El número de minas de sus adyacentes.
      */
     public int getSurroundingMines()
     {
-        return surroundingMines;
+        return board.getSurroundingMines(index);
     }
 
     /**
      * Setter para asignar el número de minas de sus adyacentes.
-     * 
+     *
      * @param surroundingMines El número de minas de sus adyacentes.
      */
     public void setSurroundingMines(int surroundingMines)
     {
-        this.surroundingMines = surroundingMines;
+        board.setSurroundingMines(index, surroundingMines);
+    }
+
+    /**
+     * Getter del índice de la celda dentro del tablero.
+     *
+     * @return El índice de la celda.
+     */
+    public int getIndex()
+    {
+        return index;
     }
 
     //-------------------------------------------------------------//
@@ -0,0 +1,298 @@
+package minesweeper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Gestor de la conexión con la base de datos. La conexión se abre una sola vez
+ *  (con UCanAccess cada conexión nueva puede volver a cargar el fichero entero)
+ *  y se reutiliza junto con las sentencias preparadas hasta llamar a {@link #close()}.
+ *  Cada operación se hace dentro de una transacción y se mide lo que tarda.
+ *
+ * @author Haris Muneer.
+ */
+public class Database
+{
+    /**
+     * Trabajo a hacer dentro de una transacción.
+     */
+    public interface Transaction
+    {
+        /**
+         * Hace el trabajo con la conexión dada. No debe confirmar ni cerrar la conexión.
+         *
+         * @param connection Conexión con la transacción abierta.
+         * @throws SQLException Si hay algún error, se deshace la transacción.
+         */
+        void run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Consulta a hacer dentro de una transacción.
+     *
+     * @param <T> Tipo del resultado.
+     */
+    public interface Query<T>
+    {
+        /**
+         * Hace la consulta con la conexión dada. No debe confirmar ni cerrar la conexión.
+         *
+         * @param connection Conexión con la transacción abierta.
+         * @return El resultado de la consulta.
+         * @throws SQLException Si hay algún error.
+         */
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * La conexión abierta, null si todavía no se ha abierto.
+     */
+    private static Connection connection;
+
+    /**
+     * Ruta de la base de datos (URL de JDBC).
+     */
+    private static String path;
+
+    /**
+     * Sentencias preparadas con la conexión abierta, por su texto.
+     */
+    private static final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    /**
+     * Tiempos de cada operación: número de veces, nanosegundos en total y máximo.
+     */
+    private static final Map<String, long[]> timings = new LinkedHashMap<>();
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Setter de la base de datos a usar, antes de abrir la conexión.
+     *
+     * @param dbPath Ruta de la base de datos (URL de JDBC).
+     */
+    public static synchronized void setPath(String dbPath)
+    {
+        path = dbPath;
+    }
+
+    /**
+     * Devuelve la conexión con la base de datos, abriéndola si hace falta.
+     *
+     * @return La conexión.
+     * @throws SQLException Si no se puede abrir.
+     */
+    public static synchronized Connection getConnection() throws SQLException
+    {
+        if (connection == null || connection.isClosed())
+        {
+            long start = System.nanoTime();
+
+            statements.clear();
+            connection = DriverManager.getConnection(path);
+            connection.setAutoCommit(false);
+
+            addTiming("connect", System.nanoTime() - start);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Devuelve una sentencia preparada, reutilizando la anterior si ya se preparó.
+     *  No hay que cerrarla.
+     *
+     * @param sql Texto de la sentencia.
+     * @return La sentencia preparada.
+     * @throws SQLException Si hay algún error.
+     */
+    public static synchronized PreparedStatement prepare(String sql) throws SQLException
+    {
+        PreparedStatement statement = statements.get(sql);
+
+        if (statement == null)
+        {
+            statement = getConnection().prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+
+        return statement;
+    }
+
+    /**
+     * Devuelve una sentencia preparada que da las claves generadas al insertar,
+     *  reutilizando la anterior si ya se preparó. No hay que cerrarla.
+     *
+     * @param sql Texto de la sentencia.
+     * @return La sentencia preparada.
+     * @throws SQLException Si hay algún error.
+     */
+    public static synchronized PreparedStatement prepareWithKeys(String sql) throws SQLException
+    {
+        String key = sql + "#keys";
+        PreparedStatement statement = statements.get(key);
+
+        if (statement == null)
+        {
+            statement = getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            statements.put(key, statement);
+        }
+
+        return statement;
+    }
+
+    /**
+     * Crea una tabla si todavía no existe en la base de datos.
+     *
+     * @param connection Conexión a la base de datos.
+     * @param table Nombre de la tabla.
+     * @param create Sentencia para crearla, y las de sus índices si los tiene.
+     * @throws SQLException Si hay algún error.
+     */
+    public static void createTable(Connection connection, String table, String... create) throws SQLException
+    {
+        ResultSet tables = connection.getMetaData().getTables(null, null, table, null);
+        boolean exists = tables.next();
+
+        tables.close();
+
+        if (!exists)
+        {
+            Statement statement = connection.createStatement();
+
+            for (String sql : create)
+                statement.execute(sql);
+
+            statement.close();
+        }
+    }
+
+    /**
+     * Ejecuta un trabajo dentro de una transacción y apunta lo que ha tardado.
+     *
+     * @param name Nombre de la operación, para {@link #getTimings()}.
+     * @param work Trabajo a hacer.
+     * @return Milisegundos que ha tardado, -1 si ha habido algún error.
+     */
+    public static synchronized long transaction(String name, Transaction work)
+    {
+        long start = System.nanoTime();
+
+        Boolean done = query(name, (Connection c) -> {
+            work.run(c);
+            return true;
+        });
+
+        return done == null ? -1 : (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * Ejecuta una consulta dentro de una transacción y apunta lo que ha tardado.
+     *
+     * @param <T> Tipo del resultado.
+     * @param name Nombre de la operación, para {@link #getTimings()}.
+     * @param work Consulta a hacer.
+     * @return El resultado de la consulta, null si ha habido algún error.
+     */
+    public static synchronized <T> T query(String name, Query<T> work)
+    {
+        long start = System.nanoTime();
+
+        try {
+            Connection c = getConnection();
+
+            try {
+                T result = work.run(c);
+                c.commit();
+
+                long nanos = System.nanoTime() - start;
+                addTiming(name, nanos);
+
+                return result;
+            }
+            catch(SQLException sqlex)
+            {
+                c.rollback();
+                throw sqlex;
+            }
+        }
+        catch(SQLException sqlex)
+        {
+            sqlex.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Cierra las sentencias preparadas y la conexión.
+     */
+    public static synchronized void close()
+    {
+        try {
+            for (PreparedStatement statement : statements.values())
+                statement.close();
+
+            statements.clear();
+
+            if (connection != null)
+                connection.close();
+        }
+        catch(SQLException sqlex)
+        {
+            sqlex.printStackTrace();
+        }
+
+        connection = null;
+    }
+
+
+    //----------------------------TIMINGS-------------------------------//
+    /**
+     * Suma un tiempo a los de una operación.
+     *
+     * @param name Nombre de la operación.
+     * @param nanos Nanosegundos que ha tardado.
+     */
+    private static void addTiming(String name, long nanos)
+    {
+        long t[] = timings.get(name);
+
+        if (t == null)
+        {
+            t = new long[3];
+            timings.put(name, t);
+        }
+
+        t[0]++;
+        t[1] += nanos;
+        t[2] = Math.max(t[2], nanos);
+    }
+
+    /**
+     * Getter de los tiempos de cada operación hecha hasta ahora.
+     *
+     * @return Una línea por operación con veces, media y máximo en milisegundos.
+     */
+    public static synchronized String getTimings()
+    {
+        StringBuilder text = new StringBuilder();
+
+        for (Map.Entry<String, long[]> e : timings.entrySet())
+        {
+            long t[] = e.getValue();
+
+            text.append(e.getKey()).append(": ").append(t[0]).append(" veces, media ")
+                .append(t[1] / t[0] / 1000000).append(" ms, máximo ")
+                .append(t[2] / 1000000).append(" ms\n");
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,348 @@
+package minesweeper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+
+/**
+ * Almacén sobre ficheros binarios en un directorio. No necesita ninguna
+ *  librería externa, así que arranca rápido y funciona en cualquier sistema.
+ *  Cada fichero se escribe primero en uno temporal y después se renombra,
+ *  para no dejarlo a medias si el juego se cierra mientras se guarda.
+ *
+ * @author Haris Muneer.
+ */
+public class FileStorage implements Storage
+{
+    /**
+     * Versión del formato del fichero de puntuación.
+     */
+    private static final int SCORE_VERSION = 1;
+
+    /**
+     * Versión del formato del fichero del historial.
+     */
+    private static final int HISTORY_VERSION = 1;
+
+    /**
+     * Bytes de cada partida del historial.
+     */
+    private static final int HISTORY_RECORD_SIZE = 8 + 4 + 4 + 4 + 1 + 4 + 4 + 8;
+
+    /**
+     * Fichero con la puntuación y los mejores tiempos.
+     */
+    private final File scoreFile;
+
+    /**
+     * Fichero con la partida guardada.
+     */
+    private final File savedGameFile;
+
+    /**
+     * Fichero con el historial de partidas. Solo se le añaden partidas al final.
+     */
+    private final File historyFile;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase. Crea el directorio si no existe.
+     *
+     * @param directory Directorio donde guardar los ficheros.
+     */
+    public FileStorage(File directory)
+    {
+        directory.mkdirs();
+
+        scoreFile = new File(directory, "score.dat");
+        savedGameFile = new File(directory, "savedgame.dat");
+        historyFile = new File(directory, "history.dat");
+    }
+
+    @Override
+    public String getName()
+    {
+        return "file";
+    }
+
+
+    //------------------------------SCORE-------------------------------//
+    @Override
+    public boolean loadScore(Score score)
+    {
+        if (!scoreFile.exists())
+            return true;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(scoreFile))))
+        {
+            if (in.readInt() != SCORE_VERSION)
+                throw new IOException("Versión de puntuación no soportada");
+
+            score.gamesPlayed = in.readInt();
+            score.gamesWon = in.readInt();
+            score.longestWinningStreak = in.readInt();
+            score.longestLosingStreak = in.readInt();
+            score.currentStreak = in.readInt();
+            score.currentWinningStreak = in.readInt();
+            score.currentLosingStreak = in.readInt();
+
+            int times = in.readInt();
+
+            for (int i = 0; i < times; i++)
+            {
+                int time = in.readInt();
+                Date date = new Date(in.readLong());
+
+                score.loadTime(i + 1, time, date);
+            }
+
+            return true;
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public long saveScore(Score score)
+    {
+        Score.Changes changes = score.takeChanges();
+
+        if (changes.isEmpty())
+            return 0;
+
+        long start = System.nanoTime();
+
+        try {
+            File temp = new File(scoreFile.getPath() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+            {
+                out.writeInt(SCORE_VERSION);
+
+                // The file is tiny, so it's written whole from the copy taken with the changes
+                for (int value : changes.values)
+                    out.writeInt(value);
+
+                out.writeInt(changes.times.size());
+
+                for (Score.Time time : changes.times)
+                {
+                    out.writeInt(time.getTimeValue());
+                    out.writeLong(time.getDateValue().getTime());
+                }
+            }
+
+            replace(temp, scoreFile);
+
+            return elapsed(start);
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+            score.restoreChanges(changes);
+            return -1;
+        }
+    }
+
+
+    //-----------------------------HISTORY------------------------------//
+    @Override
+    public boolean loadHistory(GameHistory history)
+    {
+        if (!historyFile.exists())
+            return true;
+
+        // Offset after the last complete game, where the file is cut if the rest is damaged
+        long valid = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(historyFile))))
+        {
+            if (in.readInt() != HISTORY_VERSION)
+                throw new IOException("Versión de historial no soportada");
+
+            valid = 4;
+
+            GameRecord.Result results[] = GameRecord.Result.values();
+
+            while (true)
+            {
+                long playedAt = in.readLong();
+                int rows = in.readInt(), cols = in.readInt(), mines = in.readInt();
+                int result = in.readByte();
+
+                // Garbage where a game should be, nothing after it can be trusted
+                if (result < 0 || result >= results.length)
+                    break;
+
+                history.add(new GameRecord(playedAt, rows, cols, mines, results[result],
+                                           in.readInt(), in.readInt(), in.readLong()));
+                valid += HISTORY_RECORD_SIZE;
+            }
+        }
+        catch(EOFException ex)
+        {
+            // The end of the file, maybe in the middle of the last game
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+            return false;
+        }
+
+        // A damaged last game is cut off, so the next ones are appended right after the good ones
+        if (historyFile.length() > valid)
+            truncate(historyFile, valid);
+
+        return true;
+    }
+
+    @Override
+    public long addGame(GameRecord record)
+    {
+        long start = System.nanoTime();
+        boolean created = historyFile.length() == 0;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(historyFile, true))))
+        {
+            if (created)
+                out.writeInt(HISTORY_VERSION);
+
+            out.writeLong(record.getPlayedAt());
+            out.writeInt(record.getRows());
+            out.writeInt(record.getCols());
+            out.writeInt(record.getMines());
+            out.writeByte(record.getResult().ordinal());
+            out.writeInt(record.getDuration());
+            out.writeInt(record.getClicks());
+            out.writeLong(record.getSeed());
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+            return -1;
+        }
+
+        return elapsed(start);
+    }
+
+
+    //---------------------------SAVED GAME-----------------------------//
+    @Override
+    public boolean hasSavedGame()
+    {
+        return savedGameFile.exists();
+    }
+
+    @Override
+    public byte[] loadSavedGame()
+    {
+        if (!savedGameFile.exists())
+            return null;
+
+        try {
+            return Files.readAllBytes(savedGameFile.toPath());
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public long saveGame(byte snapshot[])
+    {
+        long start = System.nanoTime();
+
+        try {
+            File temp = new File(savedGameFile.getPath() + ".tmp");
+
+            Files.write(temp.toPath(), snapshot);
+            replace(temp, savedGameFile);
+
+            return elapsed(start);
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+
+    @Override
+    public void deleteSavedGame()
+    {
+        savedGameFile.delete();
+    }
+
+    @Override
+    public void close()
+    {
+        // Every file is closed after each operation
+    }
+
+
+    //-----------------------------HELPERS------------------------------//
+    /**
+     * Cambia un fichero por otro nuevo, de forma atómica si se puede.
+     *
+     * @param from Fichero nuevo.
+     * @param to Fichero a cambiar.
+     * @throws IOException Si hay algún error.
+     */
+    private static void replace(File from, File to) throws IOException
+    {
+        try {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException ex)
+        {
+            Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Corta un fichero a un tamaño, quitando lo que haya detrás.
+     *
+     * @param file El fichero.
+     * @param size Bytes que se dejan.
+     */
+    private static void truncate(File file, long size)
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+        {
+            channel.truncate(size);
+        }
+        catch(IOException ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Lo que ha tardado una operación.
+     *
+     * @param start Momento en que empezó, de System.nanoTime().
+     * @return Milisegundos que ha tardado.
+     */
+    private static long elapsed(long start)
+    {
+        return (System.nanoTime() - start) / 1000000;
+    }
+}
@@ -12,12 +12,21 @@ import java.io.File;
 import java.net.URISyntaxException;
 import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.swing.border.Border;
 import javax.swing.border.EtchedBorder;
 import java.sql.Date;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javafx.util.Pair;
 import javax.swing.border.TitledBorder;
 import minesweeper.Score.Time;
 
@@ -26,7 +35,7 @@ import minesweeper.Score.Time;
  * 
  * @author Haris Muneer.
  */
-public class Game implements MouseListener, ActionListener, WindowListener
+public class Game implements MouseListener, ActionListener, WindowListener, GameListener
 {
     /**
      * Número por defecto de filas en el juego.
@@ -42,79 +51,254 @@ public class Game implements MouseListener, ActionListener, WindowListener
     private static final int DEFAULT_MINES = 10;
 
     /**
-     * Ruta a la base de datos.
+     * Número de mejores tiempos que se guardan de cada tablero. Se puede
+     *  cambiar con la propiedad minesweeper.leaderboardSize.
      */
-    public static String dbPath;
-    
+    private static final int LEADERBOARD_SIZE = Integer.getInteger("minesweeper.leaderboardSize", 10);
+
+    /**
+     * Tableros ya generados que se guardan de cada configuración. Se puede
+     *  cambiar con la propiedad minesweeper.poolDepth.
+     */
+    private static final int POOL_DEPTH = Integer.getInteger("minesweeper.poolDepth", 4);
+
     /**
-     * Booleano que indica si se está jugando (TRUE) o no (FALSE).
+     * Milisegundos que puede tardar el cálculo exacto de las probabilidades de mina.
      */
-    private boolean playing; 
+    private static final long PROBABILITY_BUDGET = 50;
 
+    /**
+     * Indica si para ganar hay que poner bandera a todas las minas (TRUE) o
+     *  basta con descubrir todas las casillas sin mina (FALSE). Como en el
+     *  juego original, hay que ponerlas.
+     */
+    private static final boolean FLAGS_REQUIRED = true;
+
+    /**
+     * Si se muestran al salir los tiempos del almacén y los datos de la reserva
+     *  de tableros (propiedad minesweeper.debug).
+     */
+    private static final boolean DEBUG = Boolean.getBoolean("minesweeper.debug");
+
+    /**
+     * Almacén de la puntuación y la partida guardada.
+     */
+    private final Storage storage;
+    
     /**
      * El tablero de la partida.
      */
     private Tablero board;
 
+    /**
+     * TRUE desde que se pulsan los dos botones a la vez hasta que se vuelve
+     *  a pulsar uno solo, para no tomar como clics normales los de soltarlos.
+     */
+    private boolean chording;
+
+    /**
+     * Grabadora de las partidas como repeticiones.
+     */
+    private ReplayRecorder replays;
+
+    /**
+     * Reserva de tableros generados en segundo plano para las partidas nuevas.
+     */
+    private final BoardPool boardPool = new BoardPool(POOL_DEPTH);
+
+    /**
+     * Reglas de la partida, sobre el tablero.
+     */
+    private GameEngine engine;
+
     /**
      * Ventana que muestra la partida.
      */
     private UI gui;
     
     /**
-     * Puntuación actual del jugador.
+     * Puntuación actual del jugador. Se carga en segundo plano, hay que
+     *  usarla a través de {@link #getScore()}.
      */
     private Score score;
+
+    /**
+     * Se completa cuando se ha cargado la puntuación del almacén.
+     */
+    private CompletableFuture<Boolean> scoreLoaded;
+
+    /**
+     * Historial de partidas jugadas, con sus estadísticas.
+     */
+    private final GameHistory history = new GameHistory(LEADERBOARD_SIZE);
+
+    /**
+     * Se completa cuando el historial está cargado y tiene sumadas todas las partidas terminadas.
+     */
+    private CompletableFuture<?> historyReady;
+
+    /**
+     * Hilo de fondo para leer y escribir en el almacén sin bloquear la ventana.
+     */
+    private final ScheduledExecutorService storageExecutor;
+
+    /**
+     * Milisegundos que se espera antes de guardar la puntuación, para juntar
+     *  en una sola escritura varias partidas seguidas.
+     */
+    private static final long SCORE_SAVE_DELAY = 2000;
+
+    /**
+     * TRUE si ya hay un guardado de la puntuación programado.
+     */
+    private final AtomicBoolean scoreSavePending = new AtomicBoolean();
+
+    /**
+     * Hilo de fondo para calcular las probabilidades de mina sin bloquear la ventana.
+     */
+    private final ExecutorService probabilityExecutor;
+
+    /**
+     * Número de la última petición de probabilidades. Un cálculo que ya no es
+     *  el último se salta o se tira, porque el tablero ha cambiado después.
+     */
+    private final AtomicLong probabilityRequest = new AtomicLong();
         
     //------------------------------------------------------------------//        
     /**
      * Constructor de la clase.
+     * 
+     * @param storageName Almacén a usar: "file" para ficheros, cualquier otro
+     *  valor para la base de datos de Access.
      */
-    public Game()
+    public Game(String storageName)
     {
-        // set db path
-        String p = "";
+        // set data path (the folder with the classes or the jar)
+        File dir = new File(".");
 
         try 
         {
-            p = new File(Game.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath() + "\\db.accdb";
+            dir = new File(Game.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            
+            if (dir.isFile())
+                dir = dir.getParentFile();
         }
         catch (URISyntaxException ex) 
         {
             System.out.println("Error cargando el fichero de la base de datos.");
         }
 
-        dbPath =   "jdbc:ucanaccess://" + p;
+        if (storageName.equals("file"))
+            storage = new FileStorage(new File(dir, "data"));
+        else
+            storage = new AccessStorage("jdbc:ucanaccess://" + new File(dir, "db.accdb").getPath());
 
         
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, (Runnable r) -> {
+            Thread t = new Thread(r, "storage");
+            t.setDaemon(true);
+            return t;
+        });
+        
+        // A delayed score save isn't waited for on exit, the score is saved right away then
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        storageExecutor = executor;
+
+        probabilityExecutor = Executors.newSingleThreadExecutor((Runnable r) -> {
+            Thread t = new Thread(r, "probabilities");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Load the score in the background, while the board is already playable
         score = new Score();
-        score.populate();
+        scoreLoaded = CompletableFuture.supplyAsync(() -> score.populate(storage), storageExecutor);
+        historyReady = CompletableFuture.supplyAsync(() -> storage.loadHistory(history), storageExecutor);
         
         UI.setLook("Nimbus");
                         
         createBoard();
         
-        this.gui = new UI(board.getRows(), board.getCols(), board.getNumberOfMines());        
+        this.engine = new GameEngine(board, FLAGS_REQUIRED);
+        this.engine.addListener(this);
+
+        // Record every game, written in the background with the rest of the storage
+        replays = new ReplayRecorder(new File(dir, "replays"), storageExecutor);
+        this.engine.setRecorder(replays);
+        this.engine.setUndoable(true);
+        this.engine.setBoard(board);
+        
+        this.gui = new UI(board);        
         this.gui.setButtonListeners(this);
-                        
-        this.playing = false;
         
         gui.setVisible(true);
         
-        gui.setIcons();        
-        gui.hideAll();
+        // Look for a saved game in the background, and ask when it's known
+        CompletableFuture.supplyAsync(() -> board.checkSave(storage), storageExecutor)
+                .thenAcceptAsync(this::resumeGame, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Getter de la puntuación del jugador. Si todavía se está cargando, espera a que acabe.
+     * 
+     * @return La puntuación del jugador.
+     */
+    private Score getScore()
+    {
+        scoreLoaded.join();
+        
+        return score;
+    }
+
+    /**
+     * Apunta en el historial la partida actual, que acaba de terminar.
+     * 
+     * @param result Resultado de la partida.
+     */
+    private void recordGame(GameRecord.Result result)
+    {
+        GameRecord record = new GameRecord(System.currentTimeMillis(), board.getRows(), board.getCols(), 
+                                           board.getNumberOfMines(), result, (int)gui.getTimePassedMillis(), 
+                                           engine.getClicks(), board.getSeed());
+        
+        // Added once the history is loaded, and written in the background
+        historyReady = historyReady.thenRun(() -> history.add(record));
+        storageExecutor.execute(() -> storage.addGame(record));
+    }
+
+    /**
+     * Programa el guardado de la puntuación en segundo plano. Si ya hay uno
+     *  programado, los cambios se guardan con ese.
+     */
+    private void saveScore()
+    {
+        if (scoreSavePending.compareAndSet(false, true))
+            storageExecutor.schedule(this::flushScore, SCORE_SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Guarda ahora los cambios de la puntuación. Se llama desde el hilo del almacén.
+     */
+    private void flushScore()
+    {
+        // Changes made from now on need another save
+        scoreSavePending.set(false);
         
-        resumeGame();
+        getScore().save(storage);
     }
 
     //-----------------Load Save Game (if any)--------------------------//
     
     /**
-     * Método que se encarga de mostrar el resultado final de la partida.
+     * Método que pregunta si se quiere continuar la partida guardada, si la hay.
+     *  Si ya se ha empezado a jugar mientras se buscaba, no se pregunta y la
+     *  partida guardada se queda para la próxima vez.
+     * 
+     * @param saveExists TRUE si hay una partida guardada.
      */
-    public void resumeGame()
+    public void resumeGame(boolean saveExists)
     {
-        if(board.checkSave())
+        if(saveExists && engine.getState() == GameEngine.State.READY)
         {
             ImageIcon question = new ImageIcon(getClass().getResource("/resources/question.png"));      
 
@@ -129,11 +313,11 @@ public class Game implements MouseListener, ActionListener, WindowListener
                     break;
 
                 case JOptionPane.NO_OPTION:
-                    board.deleteSavedGame();
+                    board.deleteSavedGame(storage);
                     break;
                     
                 case JOptionPane.CLOSED_OPTION:
-                    board.deleteSavedGame();
+                    board.deleteSavedGame(storage);
                     break;
             }
         }
@@ -144,60 +328,38 @@ public class Game implements MouseListener, ActionListener, WindowListener
      */
     private void extraerPartida() {
         //load board's state
-        Pair p = board.loadSaveGame();
+        BoardSnapshot saved = board.loadSaveGame(storage);
+
+        if (saved == null)
+            return;
+        
+        board = saved.getBoard();
+        engine.setBoard(board);
         
         //set button's images
+        gui.setBoard(board);
         setButtonImages();
         
         //load timer's value
-        gui.setTimePassed((int)p.getKey());
+        gui.setTimePassedMillis(saved.getTimer());
         
         //load mines value
-        gui.setMines((int)p.getValue());
+        gui.setMines(saved.getMines());
         
         gui.startTimer();
         
-        playing = true;
+        engine.resume();
+        updateProbabilities();
     }
 
 
     //-------------------------------------------------//
     /**
-     * Método que se encarga de comprobar el contenido de la tabla y, dependiendo
-     * del valor: lo deja con valores iniciales, hará mostrar una bandera, etc.
+     * Método que vuelve a pintar todo el tablero según el contenido de las celdas.
      */
     public void setButtonImages()
     {
-        Cell cells[][] = board.getCells();
-        JButton buttons[][] = gui.getButtons();
-        
-        for( int y=0 ; y<board.getRows() ; y++ ) 
-        {
-            for( int x=0 ; x<board.getCols() ; x++ ) 
-            {
-                buttons[x][y].setIcon(null);
-                
-                if (cells[x][y].getContent().equals(""))
-                {
-                    buttons[x][y].setIcon(gui.getIconTile());
-                }
-                else if (cells[x][y].getContent().equals("F"))
-                {
-                    buttons[x][y].setIcon(gui.getIconFlag());
-                    buttons[x][y].setBackground(Color.blue);	                    
-                }
-                else if (cells[x][y].getContent().equals("0"))
-                {
-                    buttons[x][y].setBackground(Color.lightGray);
-                }
-                else
-                {
-                    buttons[x][y].setBackground(Color.lightGray);                    
-                    buttons[x][y].setText(cells[x][y].getContent());
-                    gui.setTextColor(buttons[x][y]);                                        
-                }
-            }
-        }
+        gui.getBoardView().repaint();
     }
     
     
@@ -213,7 +375,19 @@ public class Game implements MouseListener, ActionListener, WindowListener
         int r = DEFAULT_ROWS;
         int c = DEFAULT_COLS;
                 
-        this.board = new Tablero(mines, r, c);        
+        boolean noGuess = gui != null && gui.isNoGuess();
+        
+        this.board = boardPool.take(mines, r, c, noGuess);
+
+        // No board without guessing was found, so a normal one with the same start cell
+        if (board == null)
+        {
+            board = new Tablero(mines, r, c, new SplittableRandom().nextLong(), NoGuessGenerator.startCell(r, c));
+
+            JOptionPane.showMessageDialog(gui, "No se ha encontrado ningún tablero que se pueda terminar sin adivinar.\n"
+                                          + "En esta partida puede que haya que adivinar.",
+                                          "Sin adivinar", JOptionPane.INFORMATION_MESSAGE);
+        }
     }
     
 
@@ -223,14 +397,15 @@ public class Game implements MouseListener, ActionListener, WindowListener
      */
     public void newGame()
     {                
-        this.playing = false;        
-                                
         createBoard();
+        engine.setBoard(board);
         
         gui.interruptTimer();
         gui.resetTimer();        
+        gui.setBoard(board);
         gui.initGame();
         gui.setMines(board.getNumberOfMines());
+        updateProbabilities();
     }
 
     //------------------------------------------------------------------------------//
@@ -239,14 +414,13 @@ public class Game implements MouseListener, ActionListener, WindowListener
      */
     public void restartGame()
     {
-        this.playing = false;
-        
-        board.resetBoard();
+        engine.restart();
         
         gui.interruptTimer();
         gui.resetTimer();        
         gui.initGame();
         gui.setMines(board.getNumberOfMines());
+        updateProbabilities();
     }
         
     //------------------------------------------------------------------------------//    
@@ -255,10 +429,9 @@ public class Game implements MouseListener, ActionListener, WindowListener
      */
     private void endGame()
     {
-        playing = false;
         showAll();
 
-        score.save();
+        saveScore();
     }
 
     //-------------------------GAME WON AND GAME LOST ---------------------------------//
@@ -267,12 +440,13 @@ public class Game implements MouseListener, ActionListener, WindowListener
      */
     public void gameWon()
     {
-        score.incCurrentStreak();
-        score.incCurrentWinningStreak();
-        score.incGamesWon();
-        score.incGamesPlayed();
+        getScore().incCurrentStreak();
+        getScore().incCurrentWinningStreak();
+        getScore().incGamesWon();
+        getScore().incGamesPlayed();
         
         gui.interruptTimer();
+        recordGame(GameRecord.Result.WON);
         endGame();
         //----------------------------------------------------------------//
         
@@ -284,16 +458,16 @@ public class Game implements MouseListener, ActionListener, WindowListener
                 
         //-----STATISTICS-----------//
         JPanel statistics = new JPanel();
-        statistics.setLayout(new GridLayout(6,1,0, DEFAULT_MINES));
+        statistics.setLayout(new GridLayout(7,1,0, DEFAULT_MINES));
         
-        ArrayList<Time> bTimes = score.getBestTimes();
+        ArrayList<Time> bTimes = getScore().getBestTimes();
         
         if (bTimes.isEmpty() || (bTimes.get(0).getTimeValue() > gui.getTimePassed()))
         {
             statistics.add(new JLabel("    Has conseguido el mejor tiempo en un nivel díficil!    "));
         }
         
-        score.addTime(gui.getTimePassed(), new Date(System.currentTimeMillis()));
+        getScore().addTime(gui.getTimePassed(), new Date(System.currentTimeMillis()));
                 
         JLabel time = new JLabel("  Tiempo:  " + Integer.toString(gui.getTimePassed()) + " segundos            Fecha:  " + new Date(System.currentTimeMillis()));
         
@@ -309,12 +483,22 @@ public class Game implements MouseListener, ActionListener, WindowListener
             bestTime.setText("  Mejor tiempo:  " + bTimes.get(0).getTimeValue() + " segundos            Fecha:  " + bTimes.get(0).getDateValue());
         }
         
-        JLabel gPlayed = new JLabel("  Partidas jugadas:  " + score.getGamesPlayed());
-        JLabel gWon = new JLabel("  Partidas ganadas:  " + score.getGamesWon());
-        JLabel gPercentage = new JLabel("  Porcentaje de ganadas:  " + score.getWinPercentage() + "%");
+        JLabel gPlayed = new JLabel("  Partidas jugadas:  " + getScore().getGamesPlayed());
+        JLabel gWon = new JLabel("  Partidas ganadas:  " + getScore().getGamesWon());
+        JLabel gPercentage = new JLabel("  Porcentaje de ganadas:  " + getScore().getWinPercentage() + "%");
         
         statistics.add(time);
         statistics.add(bestTime);
+        
+        // The game is already in the history, unless it's still loading
+        if (historyReady.isDone())
+        {
+            GameStats stats = history.getStats(board.getRows(), board.getCols(), board.getNumberOfMines());
+            
+            statistics.add(new JLabel("  Puesto en este tablero:  " + stats.getRank((int)gui.getTimePassedMillis()) 
+                                      + " de " + stats.getWins()));
+        }
+        
         statistics.add(gPlayed);
         statistics.add(gWon);
         statistics.add(gPercentage);
@@ -376,11 +560,12 @@ public class Game implements MouseListener, ActionListener, WindowListener
      */
     public void gameLost()
     {
-        score.decCurrentStreak();
-        score.incCurrentLosingStreak();
-        score.incGamesPlayed();
+        getScore().decCurrentStreak();
+        getScore().incCurrentLosingStreak();
+        getScore().incGamesPlayed();
         
         gui.interruptTimer();
+        recordGame(GameRecord.Result.LOST);
         
         endGame();
         
@@ -399,7 +584,7 @@ public class Game implements MouseListener, ActionListener, WindowListener
         
         JLabel bestTime = new JLabel();
         
-        ArrayList<Time> bTimes = score.getBestTimes();
+        ArrayList<Time> bTimes = getScore().getBestTimes();
         
         if (bTimes.isEmpty())
         {
@@ -410,9 +595,9 @@ public class Game implements MouseListener, ActionListener, WindowListener
             bestTime.setText("  Mejor tiempo:  " + bTimes.get(0).getTimeValue() + " segundos            Fecha:  " + bTimes.get(0).getDateValue());
         }
         
-        JLabel gPlayed = new JLabel("  Juegos jugados:  " + score.getGamesPlayed());
-        JLabel gWon = new JLabel("  Juegos ganados:  " + score.getGamesWon());
-        JLabel gPercentage = new JLabel("  Porcentaje ganados:  " + score.getWinPercentage() + "%");
+        JLabel gPlayed = new JLabel("  Juegos jugados:  " + getScore().getGamesPlayed());
+        JLabel gWon = new JLabel("  Juegos ganados:  " + getScore().getGamesWon());
+        JLabel gPercentage = new JLabel("  Porcentaje ganados:  " + getScore().getWinPercentage() + "%");
         
         statistics.add(time);
         statistics.add(bestTime);
@@ -485,6 +670,13 @@ public class Game implements MouseListener, ActionListener, WindowListener
      */
     public void showScore()
     {
+        // The statistics are shown once they are loaded
+        if (!scoreLoaded.isDone() || !historyReady.isDone())
+        {
+            CompletableFuture.allOf(scoreLoaded, historyReady).thenRunAsync(this::showScore, SwingUtilities::invokeLater);
+            return;
+        }
+
         //----------------------------------------------------------------//
                 
         JDialog dialog = new JDialog(gui, Dialog.ModalityType.DOCUMENT_MODAL);
@@ -492,23 +684,40 @@ public class Game implements MouseListener, ActionListener, WindowListener
         //-----BEST TIMES--------//
         
         JPanel bestTimes = new JPanel();
-        bestTimes.setLayout(new GridLayout(5,1));
         
-        ArrayList<Time> bTimes = score.getBestTimes();
+        // The best times of this board, or the old ones if there are none yet
+        GameStats stats = history.getStats(board.getRows(), board.getCols(), board.getNumberOfMines());
+        List<GameRecord> top = stats.getLeaderboard().getEntries();
         
-        for (int i = 0; i < bTimes.size(); i++)
+        ArrayList<Time> bTimes = getScore().getBestTimes();
+        
+        bestTimes.setLayout(new GridLayout(Math.max(5, top.isEmpty() ? bTimes.size() : top.size()),1));
+        
+        if (!top.isEmpty())
         {
-            JLabel t = new JLabel("  " + bTimes.get(i).getTimeValue() + "           " + bTimes.get(i).getDateValue());            
-            bestTimes.add(t);
+            for (GameRecord r : top)
+            {
+                JLabel t = new JLabel("  " + String.format("%.3f", r.getDuration() / 1000.0) + "           " + new Date(r.getPlayedAt()));
+                bestTimes.add(t);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < bTimes.size(); i++)
+            {
+                JLabel t = new JLabel("  " + bTimes.get(i).getTimeValue() + "           " + bTimes.get(i).getDateValue());            
+                bestTimes.add(t);
+            }
         }
         
-        if (bTimes.isEmpty())
+        if (top.isEmpty() && bTimes.isEmpty())
         {
             JLabel t = new JLabel("                               ");            
             bestTimes.add(t);
         }
         
-        TitledBorder b = BorderFactory.createTitledBorder("Best Times");
+        TitledBorder b = BorderFactory.createTitledBorder(top.isEmpty() ? "Best Times" 
+                : "Best Times (" + GameRecord.configOf(board.getRows(), board.getCols(), board.getNumberOfMines()) + ")");
         b.setTitleJustification(TitledBorder.LEFT);
 
         bestTimes.setBorder(b);
@@ -516,14 +725,19 @@ public class Game implements MouseListener, ActionListener, WindowListener
         //-----STATISTICS-----------//
         JPanel statistics = new JPanel();
         
-        statistics.setLayout(new GridLayout(6,1,0, DEFAULT_MINES));        
+        statistics.setLayout(new GridLayout(9,1,0, DEFAULT_MINES));        
+        
+        JLabel gPlayed = new JLabel("  Games Played:  " + getScore().getGamesPlayed());
+        JLabel gWon = new JLabel("  Games Won:  " + getScore().getGamesWon());
+        JLabel gPercentage = new JLabel("  Win Percentage:  " + getScore().getWinPercentage() + "%");
+        JLabel lWin = new JLabel("  Longest Winning Streak:  " + getScore().getLongestWinningStreak());
+        JLabel lLose = new JLabel("  Longest Losing Streak:  " + getScore().getLongestLosingStreak());
+        JLabel currentStreak = new JLabel("  Current Streak:  " + getScore().getCurrentStreak());
         
-        JLabel gPlayed = new JLabel("  Games Played:  " + score.getGamesPlayed());
-        JLabel gWon = new JLabel("  Games Won:  " + score.getGamesWon());
-        JLabel gPercentage = new JLabel("  Win Percentage:  " + score.getWinPercentage() + "%");
-        JLabel lWin = new JLabel("  Longest Winning Streak:  " + score.getLongestWinningStreak());
-        JLabel lLose = new JLabel("  Longest Losing Streak:  " + score.getLongestLosingStreak());
-        JLabel currentStreak = new JLabel("  Current Streak:  " + score.getCurrentStreak());
+        // Times of the games won with this board, from the history
+        JLabel averageTime = new JLabel("  Average Time:  " + formatSeconds(stats.getWins() == 0 ? -1 : (int)(stats.getAverageTime() / 1000)));
+        JLabel medianTime = new JLabel("  Median Time:  " + formatSeconds(stats.getPercentileTime(50)));
+        JLabel p90Time = new JLabel("  90% of Wins Under:  " + formatSeconds(stats.getPercentileTime(90)));
 
         
         statistics.add(gPlayed);
@@ -532,6 +746,9 @@ public class Game implements MouseListener, ActionListener, WindowListener
         statistics.add(lWin);
         statistics.add(lLose);
         statistics.add(currentStreak);
+        statistics.add(averageTime);
+        statistics.add(medianTime);
+        statistics.add(p90Time);
                         
         Border loweredetched = BorderFactory.createEtchedBorder(EtchedBorder.LOWERED);        
         statistics.setBorder(loweredetched);
@@ -558,8 +775,8 @@ public class Game implements MouseListener, ActionListener, WindowListener
             {
                 case JOptionPane.YES_OPTION:      
 
-                    score.resetScore();
-                    score.save();
+                    getScore().resetScore();
+                    saveScore();
                     dialog.dispose();
                     showScore();
                     break;
@@ -572,7 +789,7 @@ public class Game implements MouseListener, ActionListener, WindowListener
         buttons.add(close);
         buttons.add(reset);
         
-        if (score.getGamesPlayed() == 0)
+        if (getScore().getGamesPlayed() == 0)
             reset.setEnabled(false);
         
         //--------DIALOG-------------//
@@ -592,194 +809,76 @@ public class Game implements MouseListener, ActionListener, WindowListener
         dialog.setVisible(true);                        
     }
     
-    //------------------------------------------------------------------------------//
-	
-        
     /**
-     * Método que muestra el tablero y sus soluciones.
+     * Vuelve a calcular la probabilidad de mina de cada casilla y la pinta, si
+     *  está marcada la opción del menú. Si no, la quita. El cálculo se hace en
+     *  segundo plano sobre una copia del tablero, y se pinta solo si no ha
+     *  habido otra jugada mientras tanto.
      */
-    private void showAll()
+    private void updateProbabilities()
     {
-        String cellSolution;
+        GameEngine.State state = engine.getState();
+        long request = probabilityRequest.incrementAndGet();
         
-        Cell cells[][] = board.getCells();
-        JButton buttons[][] = gui.getButtons();
-
-        for (int x=0; x<board.getCols(); x++ ) 
+        if (gui.isShowingProbabilities() && (state == GameEngine.State.READY || state == GameEngine.State.PLAYING))
         {
-            for (int y=0; y<board.getRows(); y++ ) 
-            {
-                cellSolution = cells[x][y].getContent();
+            Tablero copy = new Tablero(board);
 
-                // Is the cell still unrevealed
-                if( cellSolution.equals("") ) 
-                {
-                    buttons[x][y].setIcon(null);
-                    
-                    // Get Neighbours
-                    cellSolution = Integer.toString(cells[x][y].getSurroundingMines());
+            probabilityExecutor.execute(() -> {
+                // A newer move is already waiting
+                if (probabilityRequest.get() != request)
+                    return;
 
-                    // Is it a mine?
-                    if(cells[x][y].getMine()) 
-                    {
-                        cellSolution = "M";
-                        
-                        //mine
-                        buttons[x][y].setIcon(gui.getIconMine());
-                        buttons[x][y].setBackground(Color.lightGray);                        
-                    }
-                    else
-                    {
-                        if(cellSolution.equals("0"))
-                        {
-                            buttons[x][y].setText("");                           
-                            buttons[x][y].setBackground(Color.lightGray);
-                        }
-                        else
-                        {
-                            buttons[x][y].setBackground(Color.lightGray);
-                            buttons[x][y].setText(cellSolution);
-                            gui.setTextColor(buttons[x][y]);
-                        }
-                    }
-                }
+                double probabilities[] = MineProbability.compute(copy, PROBABILITY_BUDGET).getProbabilities();
 
-                // This cell is already flagged!
-                else if( cellSolution.equals("F") ) 
-                {
-                    // Is it correctly flagged?
-                    if(!cells[x][y].getMine()) 
-                    {
-                        buttons[x][y].setBackground(Color.orange);
-                    }
-                    else
-                        buttons[x][y].setBackground(Color.green);
-                }
-                
-            }
+                SwingUtilities.invokeLater(() -> {
+                    if (probabilityRequest.get() == request)
+                        gui.getBoardView().setProbabilities(probabilities);
+                });
+            });
         }
+        else
+            gui.getBoardView().setProbabilities(null);
     }
     
-
-    //-------------------------------------------------------------------------//
-    
-    //-------------------------------------------------------------------------//    
-    
-
-    //-------------------------------------------------------------------------//
-
-    
-    //--------------------------------------------------------------------------//
     /**
-     * Método de test para comprobar si el juego ha terminado, es decir, las casillas
-     *  y solo esas que dejado sin descubrir tienen minas.
+     * Pasa unos segundos a texto para las estadísticas.
      * 
-     * @return Devuelver verdad si ha acabado, y falso si no.
+     * @param seconds Los segundos, -1 si no hay.
+     * @return El texto.
      */
-    public boolean isFinished()
+    private static String formatSeconds(int seconds)
     {
-        boolean isFinished = true;
-        String cellSolution;
-
-        Cell cells[][] = board.getCells();
-        
-        for( int x = 0 ; x < board.getCols() ; x++ ) 
-        {
-            for( int y = 0 ; y < board.getRows() ; y++ ) 
-            {
-                // If a game is solved, the content of each Cell should match the value of its surrounding mines
-                cellSolution = Integer.toString(cells[x][y].getSurroundingMines());
-                
-                if(cells[x][y].getMine()) 
-                    cellSolution = "F";
-
-                // Compare the player's "answer" to the solution.
-                if(!cells[x][y].getContent().equals(cellSolution))
-                {
-                    //This cell is not solved yet
-                    isFinished = false;
-                    break;
-                }
-            }
-        }
-
-        return isFinished;
-    }
-
- 
-    //Check the game to see if its finished or not
-    /**
-     * Comprueba si se ha ganado, en caso afirmativo, llama al método adecuado.
-     */
-    private void checkGame()
-    {		
-        if(isFinished()) 
-        {            
-            gameWon();
-        }
+        return seconds < 0 ? "-" : seconds + " s";
     }
-   
-    //----------------------------------------------------------------------/
-       
     
+    //------------------------------------------------------------------------------//
+	
+        
     /**
-     * Método que al descubrir un 0 (o posición sin número), empieza a descubrir
-     * todas las casillas de este tipo y las adyacentes.
-     * 
-     * @param xCo Entero con la posición horizontal que se quiere comprobar.
-     * @param yCo Entero con la posición vertical que se quiere comprobar. 
+     * Método que muestra el tablero y sus soluciones.
      */
-    public void findZeroes(int xCo, int yCo)
+    private void showAll()
     {
-        int neighbours;
-        
-        Cell cells[][] = board.getCells();
-        JButton buttons[][] = gui.getButtons();
+        gui.showSolution();
+    }
+    
 
-        // Columns
-        for(int x = board.makeValidCoordinateX(xCo - 1) ; x <= board.makeValidCoordinateX(xCo + 1) ; x++) 
-        {			
-            // Rows
-            for(int y = board.makeValidCoordinateY(yCo - 1) ; y <= board.makeValidCoordinateY(yCo + 1) ; y++) 
-            {
-                // Only unrevealed cells need to be revealed.
-                if(cells[x][y].getContent().equals("")) 
-                {
-                    // Get the neighbours of the current (neighbouring) cell.
-                    neighbours = cells[x][y].getSurroundingMines();
+    //-------------------------------------------------------------------------//
+    
+    //-------------------------------------------------------------------------//    
+    
 
-                    // Reveal the neighbours of the current (neighbouring) cell
-                    cells[x][y].setContent(Integer.toString(neighbours));
+    //-------------------------------------------------------------------------//
 
-                    if (!cells[x][y].getMine())
-                        buttons[x][y].setIcon(null);                        
-                    
-                    // Is this (neighbouring) cell a "zero" cell itself?
-                    if(neighbours == 0)
-                    {                        
-                        // Yes, give it a special color and recurse!
-                        buttons[x][y].setBackground(Color.lightGray);
-                        buttons[x][y].setText("");
-                        findZeroes(x, y);
-                    }
-                    else
-                    {
-                        // No, give it a boring gray color.
-                        buttons[x][y].setBackground(Color.lightGray);
-                        buttons[x][y].setText(Integer.toString(neighbours));
-                        gui.setTextColor(buttons[x][y]);                        
-                    }
-                }
-            }
-        }
-    }
     
+    //--------------------------------------------------------------------------//
     //-----------------------------------------------------------------------------//
     //This function is called when clicked on closed button or exit
     @Override
     public void windowClosing(WindowEvent e) 
     {
-        if (playing)
+        if (engine.getState() == GameEngine.State.PLAYING)
         {
             ImageIcon question = new ImageIcon(getClass().getResource("/resources/question.png"));      
 
@@ -794,7 +893,7 @@ public class Game implements MouseListener, ActionListener, WindowListener
                 case JOptionPane.YES_OPTION:
                     
                     gui.interruptTimer();
-                    score.save();
+                    saveScore();
                     
                     JDialog dialog = new JDialog(gui, Dialog.ModalityType.DOCUMENT_MODAL);
                     JPanel panel = new JPanel();
@@ -811,7 +910,7 @@ public class Game implements MouseListener, ActionListener, WindowListener
                        @Override
                        protected Void doInBackground() throws Exception 
                        {
-                            board.saveGame(gui.getTimePassed(), gui.getMines());                
+                            board.saveGame(storage, (int)gui.getTimePassedMillis(), gui.getMines());                
                             return null;
                        }
                        
@@ -824,21 +923,53 @@ public class Game implements MouseListener, ActionListener, WindowListener
                     worker.execute();
                     dialog.setVisible(true);
                                                             
-                    System.exit(0);
+                    exit();
                     break;
                 
                 //dont save                    
                 case JOptionPane.NO_OPTION:
-                    score.incGamesPlayed();
-                    score.save();
-                    System.exit(0);
+                    getScore().incGamesPlayed();
+                    saveScore();
+                    recordGame(GameRecord.Result.ABANDONED);
+                    exit();
                     break;
                     
                 case JOptionPane.CANCEL_OPTION: break;
             }
         }
         else
-            System.exit(0);
+            exit();
+    }
+    
+    /**
+     * Método que cierra el almacén del juego y sale.
+     */
+    private void exit()
+    {
+        // Save the score now and let the pending background work finish first
+        replays.finish();
+        storageExecutor.execute(this::flushScore);
+        storageExecutor.shutdown();
+        
+        try 
+        {
+            storageExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex) 
+        {
+        }
+        
+        boardPool.shutdown();
+        probabilityExecutor.shutdownNow();
+
+        if (DEBUG)
+        {
+            System.out.print(Database.getTimings());
+            System.out.println(boardPool.getReport());
+        }
+        
+        storage.close();
+        System.exit(0);
     }
     
     //-----------------------------------------------------------------------//
@@ -848,7 +979,7 @@ public class Game implements MouseListener, ActionListener, WindowListener
 
         if (menuItem.getName().equals("New Game"))
         {
-            if (playing)
+            if (engine.getState() == GameEngine.State.PLAYING)
             {
                 ImageIcon question = new ImageIcon(getClass().getResource("/resources/question.png"));      
 
@@ -862,14 +993,16 @@ public class Game implements MouseListener, ActionListener, WindowListener
                     case JOptionPane.YES_OPTION:      
                         
                         // Initialize the new game.
+                        recordGame(GameRecord.Result.ABANDONED);
                         newGame();
-                        score.incGamesPlayed();
-                        score.save();
+                        getScore().incGamesPlayed();
+                        saveScore();
                         break;
 
                     case JOptionPane.NO_OPTION: 
-                        score.incGamesPlayed();   
-                        score.save();
+                        getScore().incGamesPlayed();   
+                        saveScore();
+                        recordGame(GameRecord.Result.ABANDONED);
                         restartGame();
                         break;
                     
@@ -883,6 +1016,27 @@ public class Game implements MouseListener, ActionListener, WindowListener
             windowClosing(null);
         }
         
+        else if (menuItem.getName().equals("Probabilidades"))
+        {
+            updateProbabilities();
+        }
+        
+        else if (menuItem.getName().equals("Deshacer"))
+        {
+            engine.undo();
+        }
+        
+        else if (menuItem.getName().equals("Rehacer"))
+        {
+            engine.redo();
+        }
+        
+        else if (menuItem.getName().equals("Sin adivinar"))
+        {
+            // Have boards ready for the next new game
+            boardPool.fill(DEFAULT_MINES, DEFAULT_ROWS, DEFAULT_COLS, gui.isNoGuess());
+        }
+        
         //Statistics
         else
         {
@@ -896,103 +1050,97 @@ public class Game implements MouseListener, ActionListener, WindowListener
     @Override
     public void mouseClicked(MouseEvent e)
     {
-        // start timer on first click
-        if(!playing)
-        {
-            gui.startTimer();
-            playing = true;
-        }
-        
-        if (playing)
-        {
-            //Get the button's name
-            JButton button = (JButton)e.getSource();
+        // Get the clicked cell from the mouse position.
+        int i = gui.getBoardView().cellAt(e.getX(), e.getY());
 
-            // Get coordinates (button.getName().equals("x,y")).
-            String[] co = button.getName().split(",");
+        if (i < 0)
+            return;
 
-            int x = Integer.parseInt(co[0]);
-            int y = Integer.parseInt(co[1]);
+        int x = i % board.getCols();
+        int y = i / board.getCols();
 
-            // Get cell information.
-            boolean isMine = board.getCells()[x][y].getMine();
-            int neighbours = board.getCells()[x][y].getSurroundingMines();
+        // The clicks that end a both-buttons chord were already handled
+        if (chording)
+            return;
 
-            // Left Click
-            if (SwingUtilities.isLeftMouseButton(e)) 
-            {
-                if (!board.getCells()[x][y].getContent().equals("F"))
-                {
-                    button.setIcon(null);
-
-                    //Mine is clicked.
-                    if(isMine) 
-                    {  
-                        //red mine
-                        button.setIcon(gui.getIconRedMine());
-                        button.setBackground(Color.red);
-                        board.getCells()[x][y].setContent("M");
-
-                        gameLost();
-                    }
-                    else 
-                    {
-                        // The player has clicked on a number.
-                        board.getCells()[x][y].setContent(Integer.toString(neighbours));
-                        button.setText(Integer.toString(neighbours));
-                        gui.setTextColor(button);
-
-                        if( neighbours == 0 ) 
-                        {
-                            // Show all surrounding cells.
-                            button.setBackground(Color.lightGray);
-                            button.setText("");
-                            findZeroes(x, y);
-                        } 
-                        else 
-                        {
-                            button.setBackground(Color.lightGray);
-                        }
-                    }
-                }
-            }
-            // Right Click
-            else if (SwingUtilities.isRightMouseButton(e)) 
-            {
-                if(board.getCells()[x][y].getContent().equals("F")) 
-                {   
-                    board.getCells()[x][y].setContent("");
-                    button.setText("");
-                    button.setBackground(new Color(0,110,140));
+        // Middle Click
+        if (SwingUtilities.isMiddleMouseButton(e))
+        {
+            engine.chord(x, y);
+        }
+        // Left Click
+        else if (SwingUtilities.isLeftMouseButton(e)) 
+        {
+            engine.reveal(x, y);
+        }
+        // Right Click
+        else if (SwingUtilities.isRightMouseButton(e)) 
+        {
+            engine.toggleFlag(x, y);
+        }
+    }
 
-                    //simple blue
+    //------------------------GAME ENGINE EVENTS----------------------//
+    // start timer on first click
+    @Override
+    public void onGameStarted()
+    {
+        gui.startTimer();
+    }
 
-                    button.setIcon(gui.getIconTile());
-                    gui.incMines();
-                }
-                else if (board.getCells()[x][y].getContent().equals("")) 
-                {
-                    board.getCells()[x][y].setContent("F");
-                    button.setBackground(Color.blue);	
+    @Override
+    public void onCellsChanged(int changed[])
+    {
+        gui.getBoardView().repaintCells(changed);
 
-                    button.setIcon(gui.getIconFlag());
-                    gui.decMines();
-                }
-            }
+        gui.setMines(engine.getMinesLeft());
+        updateProbabilities();
+    }
 
-            checkGame();
-        }
+    @Override
+    public void onGameWon()
+    {
+        gameWon();
+    }
+
+    @Override
+    public void onGameLost(int mine)
+    {
+        gameLost();
     }
 
     //-------------------------RELATED TO SCORES----------------------//
 
 
     
-    //---------------------EMPTY FUNCTIONS-------------------------------//
+    /**
+     * Pulsar los dos botones a la vez hace chord en la celda.
+     */
     @Override
-    public void mousePressed(MouseEvent e) {
+    public void mousePressed(MouseEvent e)
+    {
+        int both = MouseEvent.BUTTON1_DOWN_MASK | MouseEvent.BUTTON3_DOWN_MASK;
+        int buttons = e.getModifiersEx() & (both | MouseEvent.BUTTON2_DOWN_MASK);
+
+        if ((buttons & both) != both)
+        {
+            // A new press alone starts a normal click
+            if (Integer.bitCount(buttons) == 1)
+                chording = false;
+
+            return;
+        }
+
+        chording = true;
+
+        int i = gui.getBoardView().cellAt(e.getX(), e.getY());
+
+        if (i >= 0)
+            engine.chord(i % board.getCols(), i / board.getCols());
     }
 
+    //---------------------EMPTY FUNCTIONS-------------------------------//
+
     @Override
     public void mouseReleased(MouseEvent e) {
     }
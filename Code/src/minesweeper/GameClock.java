@@ -0,0 +1,101 @@
+package minesweeper;
+
+/**
+ * Reloj de la partida con precisión de milisegundos. Se basa en
+ *  System.nanoTime(), que no depende de la hora del sistema, y se puede
+ *  parar y seguir (por ejemplo al guardar y cargar una partida). No tiene
+ *  hilo propio: el tiempo se calcula cuando se pide.
+ *
+ * @author Haris Muneer.
+ */
+public class GameClock
+{
+    /**
+     * Nanosegundos acumulados hasta la última vez que se paró.
+     */
+    private long elapsed;
+
+    /**
+     * Momento en que se puso en marcha, de System.nanoTime(). Solo vale si
+     *  está en marcha (System.nanoTime() puede ser negativo).
+     */
+    private long startedAt;
+
+    /**
+     * TRUE si el reloj está en marcha.
+     */
+    private boolean running;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Pone en marcha el reloj, siguiendo desde el tiempo que tenga.
+     */
+    public synchronized void start()
+    {
+        if (!running)
+        {
+            startedAt = System.nanoTime();
+            running = true;
+        }
+    }
+
+    /**
+     * Para el reloj, guardando el tiempo que lleva.
+     */
+    public synchronized void pause()
+    {
+        if (running)
+        {
+            elapsed += System.nanoTime() - startedAt;
+            running = false;
+        }
+    }
+
+    /**
+     * Para el reloj y lo pone a cero.
+     */
+    public synchronized void reset()
+    {
+        elapsed = 0;
+        running = false;
+    }
+
+    /**
+     * Cambia el tiempo del reloj, sin ponerlo en marcha ni pararlo.
+     *
+     * @param millis Milisegundos.
+     */
+    public synchronized void setElapsedMillis(long millis)
+    {
+        elapsed = millis * 1000000;
+
+        if (running)
+            startedAt = System.nanoTime();
+    }
+
+    /**
+     * Getter del tiempo del reloj.
+     *
+     * @return Milisegundos que lleva.
+     */
+    public synchronized long getElapsedMillis()
+    {
+        long nanos = elapsed;
+
+        if (running)
+            nanos += System.nanoTime() - startedAt;
+
+        return nanos / 1000000;
+    }
+
+    /**
+     * Comprueba si el reloj está en marcha.
+     *
+     * @return TRUE si está en marcha.
+     */
+    public synchronized boolean isRunning()
+    {
+        return running;
+    }
+}
@@ -0,0 +1,438 @@
+package minesweeper;
+
+import java.util.ArrayList;
+
+/**
+ * Reglas del juego sobre un {@link Tablero}, sin depender de Swing ni AWT.
+ *  Recibe las jugadas (descubrir, bandera, chord), cambia el tablero y avisa
+ *  a los {@link GameListener} registrados. Sirve tanto para la ventana del
+ *  juego como para jugar partidas simuladas sin pantalla.
+ *
+ * @author Haris Muneer.
+ */
+public class GameEngine
+{
+    /**
+     * Estados posibles de una partida.
+     */
+    public enum State
+    {
+        /**
+         * Todavía no se ha hecho ninguna jugada.
+         */
+        READY,
+        /**
+         * Se está jugando.
+         */
+        PLAYING,
+        /**
+         * Se ha ganado.
+         */
+        WON,
+        /**
+         * Se ha perdido.
+         */
+        LOST
+    }
+
+    /**
+     * Array vacío para las jugadas que no cambian nada.
+     */
+    private static final int NONE[] = new int[0];
+
+    /**
+     * El tablero de la partida.
+     */
+    private Tablero board;
+
+    /**
+     * Estado de la partida.
+     */
+    private State state;
+
+    /**
+     * Indica si para ganar hay que poner bandera a todas las minas.
+     */
+    private final boolean flagsRequired;
+
+    /**
+     * Número de jugadas que han cambiado algo en la partida.
+     */
+    private int clicks;
+
+    /**
+     * Solver que sigue la partida, null hasta que se pide por primera vez.
+     */
+    private Solver solver;
+
+    /**
+     * TRUE si se pueden deshacer las jugadas.
+     */
+    private boolean undoable;
+
+    /**
+     * Grabadora de las partidas, null si no se graban.
+     */
+    private ReplayRecorder recorder;
+
+    /**
+     * Objetos a los que avisar de los cambios.
+     */
+    private final ArrayList<GameListener> listeners;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param board El tablero de la partida.
+     * @param flagsRequired TRUE si para ganar hay que poner bandera a todas las minas,
+     *  FALSE si basta con descubrir todas las celdas sin mina.
+     */
+    public GameEngine(Tablero board, boolean flagsRequired)
+    {
+        this.flagsRequired = flagsRequired;
+        this.listeners = new ArrayList<>();
+
+        setBoard(board);
+    }
+
+    /**
+     * Añade un objeto al que avisar de los cambios de la partida.
+     *
+     * @param listener El objeto a avisar.
+     */
+    public void addListener(GameListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Setter para poder deshacer y rehacer jugadas. Empieza con la partida
+     *  actual; cada tablero nuevo tiene su propio registro de cambios.
+     *
+     * @param undoable TRUE para poder deshacerlas.
+     */
+    public void setUndoable(boolean undoable)
+    {
+        this.undoable = undoable;
+
+        board.setMoveLog(undoable ? new MoveLog() : null);
+    }
+
+    /**
+     * Setter de la grabadora de repeticiones. Graba desde la próxima partida.
+     *
+     * @param recorder La grabadora, o null para no grabar.
+     */
+    public void setRecorder(ReplayRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Empieza una partida nueva con otro tablero.
+     *
+     * @param board El tablero de la nueva partida.
+     */
+    public void setBoard(Tablero board)
+    {
+        this.board = board;
+        this.state = State.READY;
+        this.clicks = 0;
+        this.solver = null;
+
+        board.setMoveLog(undoable ? new MoveLog() : null);
+
+        if (recorder != null)
+            recorder.start(board);
+    }
+
+    /**
+     * Vuelve a empezar la partida con el mismo tablero.
+     */
+    public void restart()
+    {
+        board.resetBoard();
+
+        state = State.READY;
+        clicks = 0;
+        solver = null;
+
+        if (recorder != null)
+            recorder.start(board);
+    }
+
+    /**
+     * Continúa una partida cargada, sin avisar de que ha empezado.
+     */
+    public void resume()
+    {
+        state = State.PLAYING;
+
+        // Its first moves weren't recorded
+        if (recorder != null)
+            recorder.cancel();
+    }
+
+
+    //---------------------------MOVES------------------------------//
+    /**
+     * Descubre una celda (y toda su zona si es un 0). Si es una mina, se pierde.
+     *
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return Índices de las celdas descubiertas, vacío si no ha cambiado nada.
+     */
+    public int[] reveal(int x, int y)
+    {
+        if (!start())
+            return NONE;
+
+        int revealed[] = board.reveal(x, y);
+
+        record(revealed, board.index(x, y), ReplayWriter.REVEAL);
+        finishMove(revealed);
+
+        return revealed;
+    }
+
+    /**
+     * Pone o quita la bandera de una celda sin descubrir.
+     *
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return Índice de la celda si ha cambiado, vacío si no.
+     */
+    public int[] toggleFlag(int x, int y)
+    {
+        if (!start())
+            return NONE;
+
+        int i = board.index(x, y);
+
+        if (board.isRevealed(i))
+            return NONE;
+
+        board.setFlag(i, !board.isFlagged(i));
+
+        int changed[] = {i};
+
+        record(changed, i, ReplayWriter.FLAG);
+        finishMove(changed);
+
+        return changed;
+    }
+
+    /**
+     * Chord: si la celda es un número descubierto y tiene alrededor tantas
+     *  banderas como indica, descubre el resto de sus vecinas (ver {@link Tablero#chord(int, int)}).
+     *
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return Índices de las celdas descubiertas, vacío si no ha cambiado nada.
+     */
+    public int[] chord(int x, int y)
+    {
+        if (state != State.PLAYING)
+            return NONE;
+
+        // One flood for all the neighbours, and one update for the listeners
+        int revealed[] = board.chord(x, y);
+
+        record(revealed, board.index(x, y), ReplayWriter.CHORD);
+        finishMove(revealed);
+
+        return revealed;
+    }
+
+
+    /**
+     * Deshace la última jugada. Solo mientras se juega: una partida terminada
+     *  ya cuenta en las estadísticas.
+     *
+     * @return Índices de las celdas cambiadas, vacío si no ha cambiado nada.
+     */
+    public int[] undo()
+    {
+        if (state != State.PLAYING)
+            return NONE;
+
+        int changed[] = board.undo();
+
+        if (changed.length == 0)
+            return NONE;
+
+        // The solver only learns, start it again from the board
+        solver = null;
+
+        record(changed, 0, ReplayWriter.UNDO);
+
+        for (GameListener l : listeners)
+            l.onCellsChanged(changed);
+
+        return changed;
+    }
+
+    /**
+     * Rehace la última jugada deshecha.
+     *
+     * @return Índices de las celdas cambiadas, vacío si no ha cambiado nada.
+     */
+    public int[] redo()
+    {
+        if (state != State.PLAYING)
+            return NONE;
+
+        int changed[] = board.redo();
+
+        if (changed.length == 0)
+            return NONE;
+
+        if (solver != null)
+            solver.update(changed);
+
+        record(changed, 0, ReplayWriter.REDO);
+
+        for (GameListener l : listeners)
+            l.onCellsChanged(changed);
+
+        return changed;
+    }
+
+
+    //---------------------------HELPERS------------------------------//
+    /**
+     * Comprueba que se puede jugar y, si es la primera jugada, empieza la partida.
+     *
+     * @return TRUE si se puede jugar, FALSE si la partida ya ha terminado.
+     */
+    private boolean start()
+    {
+        if (state == State.READY)
+        {
+            state = State.PLAYING;
+
+            for (GameListener l : listeners)
+                l.onGameStarted();
+        }
+
+        return state == State.PLAYING;
+    }
+
+    /**
+     * Graba una jugada si ha cambiado algo.
+     *
+     * @param changed Índices de las celdas que han cambiado con la jugada.
+     * @param cell Celda de la jugada.
+     * @param action Acción de {@link ReplayWriter}.
+     */
+    private void record(int changed[], int cell, int action)
+    {
+        if (recorder != null && changed.length > 0)
+            recorder.record(cell, action);
+    }
+
+    /**
+     * Avisa de las celdas cambiadas y comprueba si la partida ha terminado.
+     *
+     * @param changed Índices de las celdas que han cambiado con la jugada.
+     */
+    private void finishMove(int changed[])
+    {
+        if (changed.length == 0)
+            return;
+
+        clicks++;
+        board.markMove();
+
+        if (solver != null)
+            solver.update(changed);
+
+        for (GameListener l : listeners)
+            l.onCellsChanged(changed);
+
+        if (board.isLost())
+        {
+            state = State.LOST;
+
+            if (recorder != null)
+                recorder.finish();
+
+            int mine = -1;
+
+            for (int i : changed)
+                if (board.isMine(i) && board.isRevealed(i))
+                    mine = i;
+
+            for (GameListener l : listeners)
+                l.onGameLost(mine);
+        }
+        else if (board.isFinished(flagsRequired))
+        {
+            state = State.WON;
+
+            if (recorder != null)
+                recorder.finish();
+
+            for (GameListener l : listeners)
+                l.onGameWon();
+        }
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Getter del tablero de la partida.
+     *
+     * @return El tablero de la partida.
+     */
+    public Tablero getBoard()
+    {
+        return board;
+    }
+
+    /**
+     * Getter del estado de la partida.
+     *
+     * @return El estado de la partida.
+     */
+    public State getState()
+    {
+        return state;
+    }
+
+    /**
+     * Getter del número de jugadas que han cambiado algo.
+     *
+     * @return El número de jugadas.
+     */
+    public int getClicks()
+    {
+        return clicks;
+    }
+
+    /**
+     * Getter del solver de la partida, para pistas o para jugar solo. Se crea
+     *  la primera vez que se pide y desde entonces se actualiza con cada jugada.
+     *
+     * @return El solver, al día con el tablero.
+     */
+    public Solver getSolver()
+    {
+        if (solver == null)
+            solver = new Solver(board);
+
+        return solver;
+    }
+
+    /**
+     * Getter del número de minas que faltan por marcar (minas menos banderas).
+     *
+     * @return El número de minas que faltan por marcar.
+     */
+    public int getMinesLeft()
+    {
+        return board.getNumberOfMines() - board.getFlags();
+    }
+}
@@ -0,0 +1,87 @@
+package minesweeper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Historial de partidas jugadas. Las partidas se guardan en el almacén y aquí
+ *  solo se llevan las estadísticas, de todas juntas y de cada configuración
+ *  de tablero, que se van sumando según se cargan o se juegan.
+ *
+ * @author Haris Muneer.
+ */
+public class GameHistory
+{
+    /**
+     * Estadísticas de todas las partidas.
+     */
+    private final GameStats all;
+
+    /**
+     * Estadísticas de cada configuración de tablero, por su nombre.
+     */
+    private final Map<String, GameStats> byConfig = new HashMap<>();
+
+    /**
+     * Número de mejores tiempos que se guardan de cada configuración.
+     */
+    private final int leaderboardSize;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param leaderboardSize Número de mejores tiempos que se guardan de cada configuración.
+     */
+    public GameHistory(int leaderboardSize)
+    {
+        this.leaderboardSize = leaderboardSize;
+        this.all = new GameStats(leaderboardSize);
+    }
+
+    /**
+     * Suma una partida al historial.
+     *
+     * @param record La partida.
+     */
+    public synchronized void add(GameRecord record)
+    {
+        all.add(record);
+
+        GameStats stats = byConfig.get(record.getConfig());
+
+        if (stats == null)
+        {
+            stats = new GameStats(leaderboardSize);
+            byConfig.put(record.getConfig(), stats);
+        }
+
+        stats.add(record);
+    }
+
+    /**
+     * Getter de las estadísticas de todas las partidas.
+     *
+     * @return Las estadísticas.
+     */
+    public GameStats getStats()
+    {
+        return all;
+    }
+
+    /**
+     * Getter de las estadísticas de una configuración de tablero.
+     *
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param mines Minas del tablero.
+     * @return Las estadísticas, vacías si no se ha jugado nunca con ella.
+     */
+    public synchronized GameStats getStats(int rows, int cols, int mines)
+    {
+        GameStats stats = byConfig.get(GameRecord.configOf(rows, cols, mines));
+
+        return stats == null ? new GameStats(leaderboardSize) : stats;
+    }
+}
@@ -0,0 +1,34 @@
+package minesweeper;
+
+/**
+ * Interfaz para recibir los cambios de una partida de {@link GameEngine}.
+ *  Las llamadas se hacen desde el hilo que haya hecho la jugada.
+ *
+ * @author Haris Muneer.
+ */
+public interface GameListener
+{
+    /**
+     * Se llama con la primera jugada de la partida.
+     */
+    void onGameStarted();
+
+    /**
+     * Se llama cuando cambia el estado de alguna celda (descubierta, bandera puesta o quitada).
+     *
+     * @param changed Índices de las celdas que han cambiado.
+     */
+    void onCellsChanged(int changed[]);
+
+    /**
+     * Se llama cuando se ha ganado la partida.
+     */
+    void onGameWon();
+
+    /**
+     * Se llama cuando se ha perdido la partida.
+     *
+     * @param mine Índice de la mina que se ha descubierto.
+     */
+    void onGameLost(int mine);
+}
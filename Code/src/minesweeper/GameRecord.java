@@ -0,0 +1,203 @@
+package minesweeper;
+
+/**
+ * Una partida terminada, tal y como se guarda en el historial: cuándo se
+ *  jugó, el tamaño del tablero, las minas, el resultado, lo que duró, los
+ *  clics y la semilla del tablero (para poder volver a generarlo).
+ *
+ * @author Haris Muneer.
+ */
+public class GameRecord
+{
+    /**
+     * Resultado de una partida.
+     */
+    public enum Result
+    {
+        /**
+         * Se pisó una mina.
+         */
+        LOST,
+
+        /**
+         * Se descubrieron todas las celdas sin mina.
+         */
+        WON,
+
+        /**
+         * Se dejó a medias (nueva partida, reiniciar o salir sin guardar).
+         */
+        ABANDONED
+    }
+
+    /**
+     * Momento en que terminó la partida, en milisegundos desde 1970.
+     */
+    private final long playedAt;
+
+    /**
+     * Filas del tablero.
+     */
+    private final int rows;
+
+    /**
+     * Columnas del tablero.
+     */
+    private final int cols;
+
+    /**
+     * Minas del tablero.
+     */
+    private final int mines;
+
+    /**
+     * Resultado de la partida.
+     */
+    private final Result result;
+
+    /**
+     * Milisegundos que duró la partida.
+     */
+    private final int duration;
+
+    /**
+     * Clics hechos en la partida.
+     */
+    private final int clicks;
+
+    /**
+     * Semilla del tablero.
+     */
+    private final long seed;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param playedAt Momento en que terminó, en milisegundos desde 1970.
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param mines Minas del tablero.
+     * @param result Resultado de la partida.
+     * @param duration Milisegundos que duró.
+     * @param clicks Clics hechos.
+     * @param seed Semilla del tablero.
+     */
+    public GameRecord(long playedAt, int rows, int cols, int mines, Result result, int duration, int clicks, long seed)
+    {
+        this.playedAt = playedAt;
+        this.rows = rows;
+        this.cols = cols;
+        this.mines = mines;
+        this.result = result;
+        this.duration = duration;
+        this.clicks = clicks;
+        this.seed = seed;
+    }
+
+    /**
+     * Nombre de la configuración de un tablero, para agrupar las partidas.
+     *
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param mines Minas del tablero.
+     * @return El nombre, por ejemplo "9x9/10".
+     */
+    public static String configOf(int rows, int cols, int mines)
+    {
+        return rows + "x" + cols + "/" + mines;
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Getter de la configuración del tablero de la partida.
+     *
+     * @return El nombre de la configuración.
+     */
+    public String getConfig()
+    {
+        return configOf(rows, cols, mines);
+    }
+
+    /**
+     * Getter del momento en que terminó la partida.
+     *
+     * @return Milisegundos desde 1970.
+     */
+    public long getPlayedAt()
+    {
+        return playedAt;
+    }
+
+    /**
+     * Getter de las filas del tablero.
+     *
+     * @return Las filas.
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Getter de las columnas del tablero.
+     *
+     * @return Las columnas.
+     */
+    public int getCols()
+    {
+        return cols;
+    }
+
+    /**
+     * Getter de las minas del tablero.
+     *
+     * @return Las minas.
+     */
+    public int getMines()
+    {
+        return mines;
+    }
+
+    /**
+     * Getter del resultado de la partida.
+     *
+     * @return El resultado.
+     */
+    public Result getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Getter de lo que duró la partida.
+     *
+     * @return Milisegundos que duró.
+     */
+    public int getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Getter de los clics hechos en la partida.
+     *
+     * @return Los clics.
+     */
+    public int getClicks()
+    {
+        return clicks;
+    }
+
+    /**
+     * Getter de la semilla del tablero.
+     *
+     * @return La semilla.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+}
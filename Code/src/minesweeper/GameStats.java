@@ -0,0 +1,290 @@
+package minesweeper;
+
+import static java.lang.Math.ceil;
+
+/**
+ * Estadísticas de un conjunto de partidas, calculadas sobre la marcha: cada
+ *  partida se suma en tiempo constante y no hace falta guardar la lista.
+ *  Los percentiles del tiempo se sacan de un histograma por segundos, y
+ *  los mejores tiempos se llevan en una {@link Leaderboard}.
+ *
+ * @author Haris Muneer.
+ */
+public class GameStats
+{
+    /**
+     * Segundos que cubre el histograma. Los tiempos mayores van al último hueco.
+     */
+    private static final int HISTOGRAM_SECONDS = 1000;
+
+    /**
+     * Partidas jugadas.
+     */
+    private int games;
+
+    /**
+     * Partidas ganadas.
+     */
+    private int wins;
+
+    /**
+     * Partidas perdidas.
+     */
+    private int losses;
+
+    /**
+     * Racha actual: positiva si son victorias, negativa si son derrotas.
+     */
+    private int currentStreak;
+
+    /**
+     * Máximo de victorias seguidas.
+     */
+    private int longestWinningStreak;
+
+    /**
+     * Máximo de derrotas seguidas.
+     */
+    private int longestLosingStreak;
+
+    /**
+     * Milisegundos sumados de las partidas ganadas.
+     */
+    private long totalWinTime;
+
+    /**
+     * Mejor tiempo en milisegundos, -1 si no hay victorias.
+     */
+    private int bestTime = -1;
+
+    /**
+     * Clics sumados de todas las partidas.
+     */
+    private long totalClicks;
+
+    /**
+     * Partidas ganadas por segundo que duraron.
+     */
+    private final int histogram[] = new int[HISTOGRAM_SECONDS + 1];
+
+    /**
+     * Los mejores tiempos.
+     */
+    private final Leaderboard leaderboard;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param leaderboardSize Número de mejores tiempos que se guardan.
+     */
+    public GameStats(int leaderboardSize)
+    {
+        leaderboard = new Leaderboard(leaderboardSize);
+    }
+
+    /**
+     * Suma una partida a las estadísticas.
+     *
+     * @param record La partida.
+     */
+    public synchronized void add(GameRecord record)
+    {
+        games++;
+        totalClicks += record.getClicks();
+
+        switch (record.getResult())
+        {
+            case WON:
+                wins++;
+                currentStreak = currentStreak > 0 ? currentStreak + 1 : 1;
+                longestWinningStreak = Math.max(longestWinningStreak, currentStreak);
+
+                int duration = record.getDuration();
+
+                totalWinTime += duration;
+                histogram[Math.min(duration / 1000, HISTOGRAM_SECONDS)]++;
+
+                if (bestTime < 0 || duration < bestTime)
+                    bestTime = duration;
+
+                leaderboard.add(record);
+                break;
+
+            case LOST:
+                losses++;
+                currentStreak = currentStreak < 0 ? currentStreak - 1 : -1;
+                longestLosingStreak = Math.max(longestLosingStreak, -currentStreak);
+                break;
+
+            // An abandoned game counts as played, but doesn't change the streak
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Tiempo por debajo del cual están un porcentaje de las partidas ganadas.
+     *
+     * @param percentile Porcentaje, de 0 a 100.
+     * @return Segundos, -1 si no hay victorias.
+     */
+    public synchronized int getPercentileTime(double percentile)
+    {
+        if (wins == 0)
+            return -1;
+
+        // Rank of the wanted win, from 1 to wins
+        long rank = Math.max(1, (long)ceil(percentile / 100 * wins));
+        long seen = 0;
+
+        for (int second = 0; second < histogram.length; second++)
+        {
+            seen += histogram[second];
+
+            if (seen >= rank)
+                return second;
+        }
+
+        return HISTOGRAM_SECONDS;
+    }
+
+
+    /**
+     * Puesto que tendría un tiempo entre todas las partidas ganadas. Dentro de la
+     *  tabla de mejores tiempos es exacto; fuera, se cuenta por segundos completos.
+     *
+     * @param duration Milisegundos de la partida.
+     * @return El puesto, desde 1.
+     */
+    public synchronized int getRank(int duration)
+    {
+        int rank = leaderboard.getRank(duration);
+
+        if (rank > 0)
+            return rank;
+
+        int faster = 0;
+
+        for (int second = 0; second < Math.min(duration / 1000, HISTOGRAM_SECONDS); second++)
+            faster += histogram[second];
+
+        return Math.max(faster, leaderboard.getCapacity()) + 1;
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Getter de la tabla de mejores tiempos.
+     *
+     * @return La tabla.
+     */
+    public Leaderboard getLeaderboard()
+    {
+        return leaderboard;
+    }
+
+    /**
+     * Getter de las partidas jugadas.
+     *
+     * @return Las partidas jugadas.
+     */
+    public synchronized int getGames()
+    {
+        return games;
+    }
+
+    /**
+     * Getter de las partidas ganadas.
+     *
+     * @return Las partidas ganadas.
+     */
+    public synchronized int getWins()
+    {
+        return wins;
+    }
+
+    /**
+     * Getter de las partidas perdidas.
+     *
+     * @return Las partidas perdidas.
+     */
+    public synchronized int getLosses()
+    {
+        return losses;
+    }
+
+    /**
+     * Getter del porcentaje de partidas ganadas.
+     *
+     * @return El porcentaje, redondeado hacia arriba, 0 si no hay partidas.
+     */
+    public synchronized int getWinPercentage()
+    {
+        if (games == 0)
+            return 0;
+
+        return (int)ceil(wins * 100.0 / games);
+    }
+
+    /**
+     * Getter de la racha actual.
+     *
+     * @return Positiva si son victorias, negativa si son derrotas.
+     */
+    public synchronized int getCurrentStreak()
+    {
+        return currentStreak;
+    }
+
+    /**
+     * Getter del máximo de victorias seguidas.
+     *
+     * @return El máximo de victorias seguidas.
+     */
+    public synchronized int getLongestWinningStreak()
+    {
+        return longestWinningStreak;
+    }
+
+    /**
+     * Getter del máximo de derrotas seguidas.
+     *
+     * @return El máximo de derrotas seguidas.
+     */
+    public synchronized int getLongestLosingStreak()
+    {
+        return longestLosingStreak;
+    }
+
+    /**
+     * Getter del mejor tiempo.
+     *
+     * @return Milisegundos, -1 si no hay victorias.
+     */
+    public synchronized int getBestTime()
+    {
+        return bestTime;
+    }
+
+    /**
+     * Getter del tiempo medio de las partidas ganadas.
+     *
+     * @return Milisegundos, -1 si no hay victorias.
+     */
+    public synchronized long getAverageTime()
+    {
+        return wins == 0 ? -1 : totalWinTime / wins;
+    }
+
+    /**
+     * Getter de los clics medios por partida.
+     *
+     * @return Los clics medios, 0 si no hay partidas.
+     */
+    public synchronized double getAverageClicks()
+    {
+        return games == 0 ? 0 : (double)totalClicks / games;
+    }
+}
@@ -0,0 +1,115 @@
+package minesweeper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Los K mejores tiempos de una configuración de tablero. Se guardan en un
+ *  montículo con el peor arriba, así que añadir uno cuesta O(log K) y nunca
+ *  hay más de K partidas guardadas.
+ *
+ * @author Haris Muneer.
+ */
+public class Leaderboard
+{
+    /**
+     * Orden de las partidas: antes la más rápida y, si empatan, la más antigua.
+     */
+    public static final Comparator<GameRecord> FASTEST_FIRST = (GameRecord a, GameRecord b) -> {
+        int c = Integer.compare(a.getDuration(), b.getDuration());
+
+        return c != 0 ? c : Long.compare(a.getPlayedAt(), b.getPlayedAt());
+    };
+
+    /**
+     * Número máximo de partidas en la tabla.
+     */
+    private final int capacity;
+
+    /**
+     * Las mejores partidas, con la peor de ellas arriba.
+     */
+    private final PriorityQueue<GameRecord> heap;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param capacity Número máximo de partidas en la tabla.
+     */
+    public Leaderboard(int capacity)
+    {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("El tamaño de la tabla tiene que ser positivo: " + capacity);
+
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(capacity, FASTEST_FIRST.reversed());
+    }
+
+    /**
+     * Añade una partida ganada, si está entre las mejores.
+     *
+     * @param record La partida.
+     * @return TRUE si ha entrado en la tabla.
+     */
+    public synchronized boolean add(GameRecord record)
+    {
+        if (heap.size() < capacity)
+            return heap.add(record);
+
+        // Better than the worst one in the table, which leaves
+        if (FASTEST_FIRST.compare(record, heap.peek()) < 0)
+        {
+            heap.poll();
+            return heap.add(record);
+        }
+
+        return false;
+    }
+
+    /**
+     * Puesto que tendría un tiempo en la tabla.
+     *
+     * @param duration Milisegundos de la partida.
+     * @return El puesto, desde 1, o -1 si no entra en la tabla.
+     */
+    public synchronized int getRank(int duration)
+    {
+        int faster = 0;
+
+        for (GameRecord r : heap)
+        {
+            if (r.getDuration() < duration)
+                faster++;
+        }
+
+        return faster < capacity ? faster + 1 : -1;
+    }
+
+    /**
+     * Getter de las partidas de la tabla, de la más rápida a la más lenta.
+     *
+     * @return Una copia de las partidas, en orden.
+     */
+    public synchronized List<GameRecord> getEntries()
+    {
+        List<GameRecord> entries = new ArrayList<>(heap);
+        Collections.sort(entries, FASTEST_FIRST);
+
+        return entries;
+    }
+
+    /**
+     * Getter del número máximo de partidas de la tabla.
+     *
+     * @return El número máximo.
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+}
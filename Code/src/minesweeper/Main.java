@@ -9,10 +9,21 @@ public class Main
 {
     /**
      * Método de ejecución del juego.
-     * @param args Argumentos del juego. NO UTILIZADOS.
+     * @param args Argumentos del juego: --storage=file para guardar en ficheros,
+     *  --storage=access (por defecto) para la base de datos de Access. También se
+     *  puede elegir con la propiedad minesweeper.storage. Con la propiedad
+     *  minesweeper.debug se muestran al salir los tiempos del almacén.
      */
     public static void main(String[] args) 
     {
-        Game game = new Game();
+        String storage = System.getProperty("minesweeper.storage", "access");
+
+        for (String arg : args)
+        {
+            if (arg.startsWith("--storage="))
+                storage = arg.substring("--storage=".length());
+        }
+
+        Game game = new Game(storage);
     }
 }
@@ -0,0 +1,1215 @@
+package minesweeper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Probabilidad de que cada celda tapada de un {@link Tablero} sea mina, según
+ *  lo que se ve (las celdas descubiertas y sus números) y el número total de minas.
+ *
+ *  Las celdas tapadas vecinas de alguna descubierta (la frontera) se separan en
+ *  componentes que no comparten ninguna restricción. Cada componente se recorre
+ *  celda a celda probando mina o no mina; los subproblemas con las mismas
+ *  restricciones pendientes se calculan una sola vez. Para cada componente se
+ *  cuentan las soluciones y las minas de cada celda según cuántas minas use.
+ *  Después se combinan las componentes y el resto de celdas tapadas, pesando
+ *  cada reparto por las formas de colocar las minas que sobran fuera de la
+ *  frontera (un número combinatorio).
+ *
+ *  Si el cálculo exacto pasa del tiempo o del número de subproblemas dado, las
+ *  componentes que falten se aproximan con muestras aleatorias (Monte Carlo),
+ *  y {@link #isExact()} lo dice.
+ *
+ * @author Haris Muneer.
+ */
+public class MineProbability
+{
+    /**
+     * Muestras que se toman de cada componente en la aproximación.
+     */
+    private static final int SAMPLES = 2000;
+
+    /**
+     * Soluciones de un subproblema sin celdas: una, sin minas.
+     */
+    private static final double ONE[] = {1};
+
+    /**
+     * Celdas que puede tener una componente. Con más, las soluciones de cada
+     *  celda según las minas ocupan demasiado y no se sabe ninguna probabilidad.
+     */
+    private static final int MAX_COMPONENT_CELLS = 2000;
+
+    /**
+     * Parte del máximo por debajo de la cual un valor de una distribución no
+     *  cuenta y se quita de los extremos. No cambia ninguna probabilidad que se
+     *  pueda ver, y las distribuciones no crecen con cada componente.
+     */
+    private static final double NEGLIGIBLE = 1e-20;
+
+    /**
+     * El tablero.
+     */
+    private final Tablero board;
+
+    /**
+     * Momento límite para el cálculo exacto, de System.nanoTime().
+     */
+    private final long deadline;
+
+    /**
+     * Momento límite para todo el cálculo, de System.nanoTime(). Si se pasa,
+     *  ninguna probabilidad se sabe.
+     */
+    private final long limit;
+
+    /**
+     * Subproblemas que puede recorrer el cálculo exacto, y los recorridos.
+     */
+    private final long maxSubproblems;
+    private long subproblems;
+
+    /**
+     * Probabilidad de cada celda, 0 en las descubiertas y NaN en las tapadas
+     *  si no se sabe.
+     */
+    private final double probabilities[];
+
+    /**
+     * TRUE si todas las componentes se han calculado de forma exacta.
+     */
+    private boolean exact = true;
+
+    /**
+     * Generador para la aproximación.
+     */
+    private final SplittableRandom random = new SplittableRandom(0);
+
+    /**
+     * Logaritmo del factorial de 0 a las celdas tapadas, para los números combinatorios.
+     */
+    private double logFactorials[];
+
+    /**
+     * Celdas ya puestas en la componente que se está ordenando. Se comparte
+     *  entre todas y se deja limpia después de cada una.
+     */
+    private boolean added[];
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Calcula las probabilidades de un tablero.
+     *
+     * @param board El tablero.
+     * @param budgetMillis Milisegundos que puede tardar el cálculo exacto. La
+     *  aproximación puede tardar otro tanto; si tampoco le da tiempo, no se
+     *  sabe ninguna probabilidad.
+     * @return Las probabilidades calculadas.
+     */
+    public static MineProbability compute(Tablero board, long budgetMillis)
+    {
+        long deadline = System.nanoTime() + budgetMillis * 1000000;
+
+        return new MineProbability(board, deadline, deadline + budgetMillis * 1000000, Long.MAX_VALUE);
+    }
+
+    /**
+     * Calcula las probabilidades de un tablero con un límite de trabajo en vez
+     *  de tiempo, así el resultado es siempre el mismo para el mismo tablero.
+     *
+     * @param board El tablero.
+     * @param maxSubproblems Subproblemas que puede recorrer el cálculo exacto.
+     * @return Las probabilidades calculadas.
+     */
+    public static MineProbability computeLimited(Tablero board, long maxSubproblems)
+    {
+        return new MineProbability(board, Long.MAX_VALUE, Long.MAX_VALUE, maxSubproblems);
+    }
+
+    /**
+     * Constructor de la clase. Hace el cálculo.
+     *
+     * @param board El tablero.
+     * @param deadline Momento límite para el cálculo exacto, de System.nanoTime().
+     * @param limit Momento límite para todo el cálculo, de System.nanoTime().
+     * @param maxSubproblems Subproblemas que puede recorrer el cálculo exacto.
+     */
+    private MineProbability(Tablero board, long deadline, long limit, long maxSubproblems)
+    {
+        this.board = board;
+        this.deadline = deadline;
+        this.limit = limit;
+        this.maxSubproblems = maxSubproblems;
+        this.probabilities = new double[board.getRows() * board.getCols()];
+
+        solve();
+    }
+
+
+    //--------------------------FRONTIER-------------------------------//
+    /**
+     * Hace el cálculo. Si se pasa del límite, todas las tapadas quedan sin saber.
+     */
+    private void solve()
+    {
+        try {
+            solveFrontier();
+        }
+        catch(OutOfBudgetException ex)
+        {
+            exact = false;
+            unknown();
+        }
+    }
+
+    /**
+     * Separa la frontera en componentes, las resuelve y combina los resultados.
+     *
+     * @throws OutOfBudgetException Si se pasa del límite de todo el cálculo.
+     */
+    private void solveFrontier() throws OutOfBudgetException
+    {
+        int cells = probabilities.length;
+        int cols = board.getCols(), rows = board.getRows();
+
+        // Union-find of the hidden cells that share a revealed neighbour
+        int parent[] = new int[cells];
+        boolean frontier[] = new boolean[cells];
+        int hidden = 0, mines = board.getNumberOfMines();
+
+        for (int i = 0; i < cells; i++)
+        {
+            parent[i] = i;
+
+            if (!board.isRevealed(i))
+                hidden++;
+            else if (board.isMine(i))
+                mines--;
+        }
+
+        for (int i = 0; i < cells; i++)
+        {
+            if ((i & 1023) == 0)
+                checkLimit();
+
+            if (!isConstraint(i))
+                continue;
+
+            int first = -1;
+
+            for (int n : neighbours(i, cols, rows))
+            {
+                if (board.isRevealed(n))
+                    continue;
+
+                frontier[n] = true;
+
+                if (first < 0)
+                    first = n;
+                else
+                    parent[find(parent, n)] = find(parent, first);
+            }
+        }
+
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        int outside = hidden;
+
+        for (int i = 0; i < cells; i++)
+        {
+            if ((i & 1023) == 0)
+                checkLimit();
+
+            if (frontier[i])
+            {
+                groups.computeIfAbsent(find(parent, i), (Integer k) -> new ArrayList<>()).add(i);
+                outside--;
+            }
+        }
+
+        logFactorials = new double[hidden + 1];
+
+        for (int i = 1; i <= hidden; i++)
+            logFactorials[i] = logFactorials[i - 1] + Math.log(i);
+
+        added = new boolean[cells];
+
+        List<Component> components = new ArrayList<>();
+
+        for (List<Integer> group : groups.values())
+        {
+            // Too big to even keep the ways of each cell
+            if (group.size() > MAX_COMPONENT_CELLS)
+                throw new OutOfBudgetException();
+
+            Component c = new Component(group);
+
+            try {
+                c.enumerate();
+            }
+            catch(OutOfBudgetException ex)
+            {
+                exact = false;
+                c.sample();
+            }
+
+            c.trim();
+            components.add(c);
+        }
+
+        combine(components, outside, mines);
+    }
+
+    /**
+     * Combina las componentes con las celdas de fuera de la frontera.
+     *
+     *  Primero se multiplican las distribuciones de minas de las componentes
+     *  una detrás de otra. Después se recorren al revés llevando, para cada
+     *  número de minas de las anteriores, las formas de completar el tablero
+     *  con las siguientes y las de fuera; con eso se pesa cada componente.
+     *  Las distribuciones se guardan desde su primer valor que cuenta y
+     *  escaladas a su máximo, porque los números no caben en un double.
+     *
+     * @param components Las componentes resueltas.
+     * @param outside Celdas tapadas fuera de la frontera.
+     * @param mines Minas que quedan tapadas.
+     * @throws OutOfBudgetException Si se pasa del límite de todo el cálculo.
+     */
+    private void combine(List<Component> components, int outside, int mines) throws OutOfBudgetException
+    {
+        int n = components.size();
+
+        // Mine distribution of the first c components, from the count in from[c]
+        double prefix[][] = new double[n + 1][];
+        int from[] = new int[n + 1], skips[] = new int[n];
+
+        prefix[0] = ONE;
+
+        for (int c = 0; c < n; c++)
+        {
+            Component comp = components.get(c);
+
+            if (comp.dist.length == 0)
+            {
+                unknown();
+                return;
+            }
+
+            double product[] = convolve(prefix[c], comp.dist);
+            int skip = first(product), end = last(product) + 1;
+
+            if (skip >= end)
+            {
+                unknown();
+                return;
+            }
+
+            prefix[c + 1] = scale(product, skip, end);
+            from[c + 1] = from[c] + comp.lo + skip;
+            skips[c] = skip;
+        }
+
+        // Ways to place the other mines outside the frontier, for each frontier count
+        double all[] = prefix[n];
+        double outsideWays[] = new double[all.length];
+        double maxLog = Double.NEGATIVE_INFINITY;
+
+        for (int k = 0; k < all.length; k++)
+        {
+            int left = mines - from[n] - k;
+            outsideWays[k] = left >= 0 && left <= outside ? logBinomial(outside, left) : Double.NEGATIVE_INFINITY;
+            maxLog = Math.max(maxLog, outsideWays[k]);
+        }
+
+        double total = 0, outsideMines = 0;
+
+        for (int k = 0; k < all.length; k++)
+        {
+            outsideWays[k] = Math.exp(outsideWays[k] - maxLog);
+            total += all[k] * outsideWays[k];
+            outsideMines += all[k] * outsideWays[k] * (mines - from[n] - k);
+        }
+
+        // No layout fits what's shown, so nothing can be said of the hidden cells
+        if (total == 0 || Double.isNaN(total))
+        {
+            unknown();
+            return;
+        }
+
+        // Ways to complete the board after the first c + 1 components, for each count in prefix[c + 1]
+        double rest[] = outsideWays;
+
+        for (int c = n - 1; c >= 0; c--)
+        {
+            checkLimit();
+
+            Component comp = components.get(c);
+            double before[] = prefix[c];
+            double weights[] = new double[comp.dist.length];
+
+            for (int k = 0; k < weights.length; k++)
+                weights[k] = dot(before, rest, k - skips[c]);
+
+            double sum = 0;
+
+            for (int k = 0; k < weights.length; k++)
+                sum += comp.dist[k] * weights[k];
+
+            for (int j = 0; j < comp.cells.length; j++)
+            {
+                double p = 0;
+
+                for (int k = 0; k < weights.length; k++)
+                    p += comp.mineWays[j][comp.lo + k] * weights[k];
+
+                probabilities[comp.cells[j]] = p / sum;
+            }
+
+            double next[] = new double[before.length];
+
+            for (int a = 0; a < next.length; a++)
+                next[a] = dot(comp.dist, rest, a - skips[c]);
+
+            rest = scale(next, 0, next.length);
+        }
+
+        if (outside > 0)
+        {
+            double p = outsideMines / total / outside;
+
+            for (int i = 0; i < probabilities.length; i++)
+            {
+                if ((i & 1023) == 0)
+                    checkLimit();
+
+                if (!board.isRevealed(i) && !isFrontier(i))
+                    probabilities[i] = p;
+            }
+        }
+    }
+
+    /**
+     * Deja sin saber todas las celdas tapadas.
+     */
+    private void unknown()
+    {
+        for (int i = 0; i < probabilities.length; i++)
+            probabilities[i] = board.isRevealed(i) ? 0 : Double.NaN;
+    }
+
+
+    //--------------------------COMPONENT-------------------------------//
+    /**
+     * Una componente de la frontera: celdas tapadas y las restricciones que las unen.
+     */
+    private class Component
+    {
+        /**
+         * Celdas de la componente, en el orden en que se recorren.
+         */
+        final int cells[];
+
+        /**
+         * Restricciones de cada celda: índices en constraintCells.
+         */
+        final int cellConstraints[][];
+
+        /**
+         * Celdas descubiertas que hacen de restricción.
+         */
+        final int constraintCells[];
+
+        /**
+         * Primera y última celda de la componente que toca cada restricción.
+         */
+        final int firstCell[], lastCell[];
+
+        /**
+         * Para cada celda y cada una de sus restricciones, cuántas celdas de la
+         *  restricción quedan detrás de ella.
+         */
+        final int after[][];
+
+        /**
+         * Soluciones según el número de minas.
+         */
+        double ways[];
+
+        /**
+         * Soluciones con mina en cada celda, según el número de minas.
+         */
+        double mineWays[][];
+
+        /**
+         * Soluciones según el número de minas desde lo, sin los extremos que no
+         *  cuentan. Se escalan con mineWays para que su máximo sea 1.
+         */
+        double dist[];
+        int lo;
+
+        /**
+         * Restricciones abiertas en cada celda: tocan alguna celda anterior y
+         *  esa o alguna posterior. Son las únicas que importan para lo que queda.
+         */
+        final int open[][];
+
+        /**
+         * Subproblemas ya resueltos de cada celda, por las minas que faltan en
+         *  sus restricciones abiertas: soluciones de lo que queda según las minas.
+         */
+        private final List<Map<Key, double[]>> memo;
+
+        /**
+         * Constructor de la clase. Ordena las celdas para que las restricciones
+         *  se cierren pronto y haya menos subproblemas distintos.
+         *
+         * @param group Celdas de la componente.
+         * @throws OutOfBudgetException Si se pasa del límite de todo el cálculo.
+         */
+        Component(List<Integer> group) throws OutOfBudgetException
+        {
+            int cols = board.getCols(), rows = board.getRows();
+
+            // Breadth-first through shared constraints
+            List<Integer> order = new ArrayList<>();
+            List<Integer> constraints = new ArrayList<>();
+            Map<Integer, Integer> constraintIndex = new HashMap<>();
+
+            order.add(group.get(0));
+            added[group.get(0)] = true;
+
+            for (int q = 0; q < order.size(); q++)
+            {
+                checkLimit();
+
+                for (int r : neighbours(order.get(q), cols, rows))
+                {
+                    if (!isConstraint(r) || constraintIndex.containsKey(r))
+                        continue;
+
+                    constraintIndex.put(r, constraints.size());
+                    constraints.add(r);
+
+                    for (int n : neighbours(r, cols, rows))
+                    {
+                        if (!board.isRevealed(n) && !added[n])
+                        {
+                            added[n] = true;
+                            order.add(n);
+                        }
+                    }
+                }
+            }
+
+            cells = new int[order.size()];
+            cellConstraints = new int[cells.length][];
+            constraintCells = new int[constraints.size()];
+            firstCell = new int[constraintCells.length];
+            lastCell = new int[constraintCells.length];
+
+            Arrays.fill(firstCell, -1);
+
+            for (int j = 0; j < cells.length; j++)
+            {
+                cells[j] = order.get(j);
+                added[cells[j]] = false;
+            }
+
+            for (int r = 0; r < constraintCells.length; r++)
+                constraintCells[r] = constraints.get(r);
+
+            for (int j = 0; j < cells.length; j++)
+            {
+                List<Integer> own = new ArrayList<>();
+
+                for (int r : neighbours(cells[j], cols, rows))
+                {
+                    Integer index = constraintIndex.get(r);
+
+                    if (index != null)
+                    {
+                        own.add(index);
+
+                        if (firstCell[index] < 0)
+                            firstCell[index] = j;
+
+                        lastCell[index] = Math.max(lastCell[index], j);
+                    }
+                }
+
+                cellConstraints[j] = new int[own.size()];
+
+                for (int k = 0; k < own.size(); k++)
+                    cellConstraints[j][k] = own.get(k);
+            }
+
+            // Sweep the cells keeping the open constraints: each opens after
+            //  its first cell and closes after its last one
+            List<List<Integer>> opening = new ArrayList<>(), closing = new ArrayList<>();
+
+            for (int j = 0; j <= cells.length; j++)
+            {
+                opening.add(new ArrayList<>());
+                closing.add(new ArrayList<>());
+            }
+
+            for (int r = 0; r < constraintCells.length; r++)
+            {
+                if (firstCell[r] < lastCell[r])
+                {
+                    opening.get(firstCell[r] + 1).add(r);
+                    closing.get(lastCell[r] + 1).add(r);
+                }
+            }
+
+            open = new int[cells.length + 1][];
+            memo = new ArrayList<>(cells.length + 1);
+
+            int active[] = new int[constraintCells.length];
+            int position[] = new int[constraintCells.length];
+            int size = 0;
+
+            for (int j = 0; j <= cells.length; j++)
+            {
+                for (int r : closing.get(j))
+                {
+                    // Swap with the last one
+                    int moved = active[--size];
+                    active[position[r]] = moved;
+                    position[moved] = position[r];
+                }
+
+                for (int r : opening.get(j))
+                {
+                    position[r] = size;
+                    active[size++] = r;
+                }
+
+                open[j] = Arrays.copyOf(active, size);
+                memo.add(new HashMap<>());
+            }
+
+            // Walking backwards, count the cells of each constraint still to come
+            after = new int[cells.length][];
+            int seenAfter[] = new int[constraintCells.length];
+
+            for (int j = cells.length - 1; j >= 0; j--)
+            {
+                after[j] = new int[cellConstraints[j].length];
+
+                for (int k = 0; k < cellConstraints[j].length; k++)
+                    after[j][k] = seenAfter[cellConstraints[j][k]]++;
+            }
+        }
+
+        /**
+         * Cuenta todas las soluciones de la componente. Primero cuenta hacia
+         *  atrás las soluciones de cada subproblema, y después recorre los
+         *  subproblemas hacia delante contando de cuántas formas se llega a cada
+         *  uno; las soluciones con mina en una celda salen de multiplicar las dos.
+         *
+         * @throws OutOfBudgetException Si se acaba el tiempo o el límite de subproblemas.
+         */
+        void enumerate() throws OutOfBudgetException
+        {
+            int n = cells.length;
+            int start[] = new int[constraintCells.length];
+
+            for (int r = 0; r < start.length; r++)
+                start[r] = board.getSurroundingMines(constraintCells[r]);
+
+            ways = count(0, start);
+            mineWays = new double[n][n + 1];
+
+            // Subproblems of the current cell, with the ways to reach them by mines used
+            Map<Key, Reached> level = new HashMap<>();
+            level.put(key(0, start), new Reached(start, new double[] {1}));
+
+            for (int j = 0; j < n; j++)
+            {
+                Map<Key, Reached> next = new HashMap<>();
+
+                for (Reached state : level.values())
+                {
+                    spend();
+
+                    for (int v = 0; v <= 1; v++)
+                    {
+                        if (!fits(j, state.left, v))
+                            continue;
+
+                        int left[] = state.left.clone();
+
+                        for (int r : cellConstraints[j])
+                            left[r] -= v;
+
+                        double sub[] = count(j + 1, left);
+
+                        if (v == 1)
+                        {
+                            for (int a = 0; a < state.ways.length; a++)
+                            {
+                                for (int m = 0; m < sub.length; m++)
+                                    mineWays[j][a + 1 + m] += state.ways[a] * sub[m];
+                            }
+                        }
+
+                        Key k = key(j + 1, left);
+                        Reached reached = next.get(k);
+
+                        if (reached == null)
+                        {
+                            reached = new Reached(left, new double[j + 2]);
+                            next.put(k, reached);
+                        }
+
+                        for (int a = 0; a < state.ways.length; a++)
+                            reached.ways[a + v] += state.ways[a];
+                    }
+                }
+
+                level = next;
+            }
+        }
+
+        /**
+         * Cuenta las soluciones de las celdas desde una dada. Lleva su propia
+         *  pila, con un subproblema por celda, porque recursivamente bajaría
+         *  tantas llamadas como celdas tiene la componente.
+         *
+         * @param j Primera celda.
+         * @param left Minas que faltan en cada restricción. Se deja como estaba.
+         * @return Las soluciones según las minas usadas.
+         * @throws OutOfBudgetException Si se acaba el tiempo o el límite de subproblemas.
+         */
+        private double[] count(int j, int left[]) throws OutOfBudgetException
+        {
+            int bottom = j, depth = cells.length - bottom;
+
+            // The open subproblem of each cell, the value being tried and the solutions so far
+            Key keys[] = new Key[depth];
+            int values[] = new int[depth];
+            double results[][] = new double[depth][];
+
+            double sub[] = null;
+            boolean entering = true;
+
+            while (true)
+            {
+                if (entering)
+                {
+                    if (j == cells.length)
+                        sub = ONE;
+                    else
+                    {
+                        Key k = key(j, left);
+                        sub = memo.get(j).get(k);
+
+                        if (sub == null)
+                        {
+                            spend();
+
+                            keys[j - bottom] = k;
+                            values[j - bottom] = -1;
+                            results[j - bottom] = new double[cells.length - j + 1];
+                        }
+                    }
+                }
+
+                // Cell j is solved, so it's added to the one before
+                if (sub != null)
+                {
+                    if (j == bottom)
+                        return sub;
+
+                    j--;
+
+                    int f = j - bottom, v = values[f];
+
+                    for (int r : cellConstraints[j])
+                        left[r] += v;
+
+                    for (int m = 0; m < sub.length; m++)
+                        results[f][m + v] += sub[m];
+                }
+
+                int f = j - bottom, v = values[f] + 1;
+
+                while (v <= 1 && !fits(j, left, v))
+                    v++;
+
+                if (v > 1)
+                {
+                    memo.get(j).put(keys[f], results[f]);
+
+                    sub = results[f];
+                    entering = false;
+                }
+                else
+                {
+                    values[f] = v;
+
+                    for (int r : cellConstraints[j])
+                        left[r] -= v;
+
+                    j++;
+                    entering = true;
+                }
+            }
+        }
+
+        /**
+         * Clave de un subproblema: las minas que faltan en las restricciones
+         *  abiertas de la celda, 4 bits cada una (nunca pasan de 8).
+         *
+         * @param j Celda.
+         * @param left Minas que faltan en cada restricción.
+         * @return La clave.
+         */
+        private Key key(int j, int left[])
+        {
+            int own[] = open[j];
+            long bits[] = new long[(own.length + 15) / 16];
+
+            for (int t = 0; t < own.length; t++)
+                bits[t >> 4] |= (long)left[own[t]] << ((t & 15) * 4);
+
+            return new Key(bits);
+        }
+
+        /**
+         * Comprueba si la celda j puede tomar un valor sin romper ninguna restricción.
+         *
+         * @param j Celda.
+         * @param left Minas que faltan en cada restricción.
+         * @param v 1 si se pone mina, 0 si no.
+         * @return TRUE si puede.
+         */
+        private boolean fits(int j, int left[], int v)
+        {
+            for (int k = 0; k < cellConstraints[j].length; k++)
+            {
+                int remaining = left[cellConstraints[j][k]] - v;
+
+                // The mines left have to fit in the cells still to come
+                if (remaining < 0 || remaining > after[j][k])
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Aproxima la componente con muestras al azar. Cada muestra recorre las
+         *  celdas eligiendo al azar entre los valores que caben, y pesa lo contrario
+         *  de la probabilidad de haberla sacado, así que las cuentas salen bien en
+         *  media (las que llegan a un callejón sin salida pesan 0).
+         *
+         * @throws OutOfBudgetException Si se pasa del límite de todo el cálculo.
+         */
+        void sample() throws OutOfBudgetException
+        {
+            int n = cells.length;
+            int left[] = new int[constraintCells.length];
+            int assignment[] = new int[n];
+
+            ways = new double[n + 1];
+            mineWays = new double[n][n + 1];
+
+            for (int s = 0; s < SAMPLES; s++)
+            {
+                checkLimit();
+
+                for (int r = 0; r < left.length; r++)
+                    left[r] = board.getSurroundingMines(constraintCells[r]);
+
+                int choices = 0, m = 0;
+                int j;
+
+                for (j = 0; j < n; j++)
+                {
+                    boolean safe = fits(j, left, 0), mine = fits(j, left, 1);
+
+                    if (!safe && !mine)
+                        break;
+
+                    int v = safe && mine ? random.nextInt(2) : (mine ? 1 : 0);
+
+                    if (safe && mine)
+                        choices++;
+
+                    for (int r : cellConstraints[j])
+                        left[r] -= v;
+
+                    assignment[j] = v;
+                    m += v;
+                }
+
+                // A dead end
+                if (j < n)
+                    continue;
+
+                // 2^choices, scaled by 2^(-n/2) so it fits in a double up to MAX_COMPONENT_CELLS
+                double weight = Math.scalb(1.0, choices - n / 2);
+
+                ways[m] += weight;
+
+                for (j = 0; j < n; j++)
+                    mineWays[j][m] += weight * assignment[j];
+            }
+        }
+
+        /**
+         * Quita de las soluciones los extremos que no cuentan y las escala,
+         *  junto con las de cada celda, para que su máximo sea 1.
+         */
+        void trim()
+        {
+            lo = first(ways);
+            dist = scale(ways, lo, Math.max(lo, last(ways) + 1));
+
+            double max = max(ways);
+
+            if (max > 0)
+            {
+                for (double w[] : mineWays)
+                {
+                    for (int m = 0; m < w.length; m++)
+                        w[m] /= max;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clave de un subproblema en la memoria de una componente.
+     */
+    private static class Key
+    {
+        private final long bits[];
+        private final int hash;
+
+        Key(long bits[])
+        {
+            this.bits = bits;
+            this.hash = Arrays.hashCode(bits);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof Key && Arrays.equals(bits, ((Key)other).bits);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+    /**
+     * Subproblema al que se llega en el recorrido hacia delante.
+     */
+    private static class Reached
+    {
+        /**
+         * Minas que faltan en cada restricción.
+         */
+        final int left[];
+
+        /**
+         * Formas de llegar según las minas usadas antes.
+         */
+        final double ways[];
+
+        Reached(int left[], double ways[])
+        {
+            this.left = left;
+            this.ways = ways;
+        }
+    }
+
+    /**
+     * Se lanza cuando se acaba el tiempo o el límite de subproblemas del cálculo
+     *  exacto, o el límite de todo el cálculo.
+     */
+    private static class OutOfBudgetException extends Exception
+    {
+    }
+
+
+    //-----------------------------HELPERS------------------------------//
+    /**
+     * Comprueba que no se ha pasado el límite de todo el cálculo.
+     *
+     * @throws OutOfBudgetException Si se ha pasado.
+     */
+    private void checkLimit() throws OutOfBudgetException
+    {
+        if (System.nanoTime() > limit)
+            throw new OutOfBudgetException();
+    }
+
+    /**
+     * Cuenta un subproblema más del cálculo exacto.
+     *
+     * @throws OutOfBudgetException Si se acaba el tiempo o el límite de subproblemas.
+     */
+    private void spend() throws OutOfBudgetException
+    {
+        if (++subproblems > maxSubproblems || System.nanoTime() > deadline)
+            throw new OutOfBudgetException();
+    }
+
+    /**
+     * Comprueba si una celda es una restricción: descubierta, sin mina y con vecinas tapadas.
+     *
+     * @param i Índice de la celda.
+     * @return TRUE si lo es.
+     */
+    private boolean isConstraint(int i)
+    {
+        if (!board.isRevealed(i) || board.isMine(i))
+            return false;
+
+        for (int n : neighbours(i, board.getCols(), board.getRows()))
+        {
+            if (!board.isRevealed(n))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Comprueba si una celda tapada está en la frontera.
+     *
+     * @param i Índice de la celda.
+     * @return TRUE si tiene alguna vecina que es restricción.
+     */
+    private boolean isFrontier(int i)
+    {
+        for (int n : neighbours(i, board.getCols(), board.getRows()))
+        {
+            if (board.isRevealed(n) && !board.isMine(n))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Índices de las vecinas de una celda.
+     *
+     * @param i Índice de la celda.
+     * @param cols Columnas del tablero.
+     * @param rows Filas del tablero.
+     * @return Los índices de sus vecinas.
+     */
+    private static int[] neighbours(int i, int cols, int rows)
+    {
+        int x = i % cols, y = i / cols;
+        int out[] = new int[8];
+        int n = 0;
+
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(rows - 1, y + 1); ny++)
+        {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(cols - 1, x + 1); nx++)
+            {
+                if (nx != x || ny != y)
+                    out[n++] = ny * cols + nx;
+            }
+        }
+
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Raíz de un conjunto en el union-find, acortando el camino.
+     *
+     * @param parent Padre de cada elemento.
+     * @param i Elemento.
+     * @return La raíz de su conjunto.
+     */
+    private static int find(int parent[], int i)
+    {
+        while (parent[i] != i)
+        {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+
+        return i;
+    }
+
+    /**
+     * Producto de dos distribuciones de minas.
+     *
+     * @param a Formas según las minas de la primera.
+     * @param b Formas según las minas de la segunda.
+     * @return Formas según las minas de las dos juntas.
+     * @throws OutOfBudgetException Si se pasa del límite de todo el cálculo.
+     */
+    private double[] convolve(double a[], double b[]) throws OutOfBudgetException
+    {
+        double c[] = new double[a.length + b.length - 1];
+
+        for (int i = 0; i < a.length; i++)
+        {
+            if ((i & 255) == 255)
+                checkLimit();
+
+            if (a[i] == 0)
+                continue;
+
+            for (int j = 0; j < b.length; j++)
+                c[i + j] += a[i] * b[j];
+        }
+
+        return c;
+    }
+
+    /**
+     * Primera posición de una distribución con un valor que cuenta.
+     *
+     * @param a La distribución.
+     * @return La posición, a.length si no hay ninguna.
+     */
+    private static int first(double a[])
+    {
+        double min = max(a) * NEGLIGIBLE;
+        int i = 0;
+
+        while (i < a.length && !(a[i] > min))
+            i++;
+
+        return i;
+    }
+
+    /**
+     * Última posición de una distribución con un valor que cuenta.
+     *
+     * @param a La distribución.
+     * @return La posición, -1 si no hay ninguna.
+     */
+    private static int last(double a[])
+    {
+        double min = max(a) * NEGLIGIBLE;
+        int i = a.length - 1;
+
+        while (i >= 0 && !(a[i] > min))
+            i--;
+
+        return i;
+    }
+
+    /**
+     * Valor más grande de una distribución.
+     *
+     * @param a La distribución.
+     * @return El máximo, 0 si está vacía.
+     */
+    private static double max(double a[])
+    {
+        double max = 0;
+
+        for (double v : a)
+            max = Math.max(max, v);
+
+        return max;
+    }
+
+    /**
+     * Copia un trozo de una distribución escalado para que su máximo sea 1.
+     *
+     * @param a La distribución.
+     * @param start Primera posición que se copia.
+     * @param end Posición siguiente a la última que se copia.
+     * @return El trozo escalado.
+     */
+    private static double[] scale(double a[], int start, int end)
+    {
+        double out[] = Arrays.copyOfRange(a, start, end);
+        double max = max(out);
+
+        if (max > 0)
+        {
+            for (int i = 0; i < out.length; i++)
+                out[i] /= max;
+        }
+
+        return out;
+    }
+
+    /**
+     * Suma de los productos de dos distribuciones, con la segunda desplazada.
+     *
+     * @param a La primera.
+     * @param b La segunda.
+     * @param shift Posición de b que va con la primera de a.
+     * @return La suma de a[i] * b[i + shift] donde existen los dos.
+     */
+    private static double dot(double a[], double b[], int shift)
+    {
+        double sum = 0;
+        int end = Math.min(a.length, b.length - shift);
+
+        for (int i = Math.max(0, -shift); i < end; i++)
+            sum += a[i] * b[i + shift];
+
+        return sum;
+    }
+
+    /**
+     * Logaritmo del número combinatorio n sobre k, con la tabla de factoriales.
+     *
+     * @param n Total, como mucho las celdas tapadas.
+     * @param k Elegidos.
+     * @return ln(n! / (k! (n-k)!)).
+     */
+    private double logBinomial(int n, int k)
+    {
+        return logFactorials[n] - logFactorials[k] - logFactorials[n - k];
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Getter de la probabilidad de una celda.
+     *
+     * @param i Índice de la celda.
+     * @return Probabilidad de que sea mina, 0 si está descubierta y NaN si no
+     *  se sabe: ninguna colocación de las minas encaja con lo que se ve, o el
+     *  cálculo se ha pasado del tiempo.
+     */
+    public double getProbability(int i)
+    {
+        return probabilities[i];
+    }
+
+    /**
+     * Getter de las probabilidades de todas las celdas.
+     *
+     * @return Una probabilidad por celda, en orden de índice (ver {@link #getProbability(int)}).
+     */
+    public double[] getProbabilities()
+    {
+        return probabilities.clone();
+    }
+
+    /**
+     * Comprueba si el cálculo ha sido exacto.
+     *
+     * @return TRUE si es exacto, FALSE si alguna componente se ha aproximado.
+     */
+    public boolean isExact()
+    {
+        return exact;
+    }
+}
@@ -0,0 +1,183 @@
+package minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * Registro de cambios de un {@link Tablero} para deshacer y rehacer jugadas.
+ *  No guarda copias del tablero: cada cambio es una entrada (índice de la
+ *  celda, valor anterior) en dos arrays de primitivos, y una marca separa
+ *  las entradas de cada jugada. Deshacer o rehacer una jugada cuesta lo
+ *  mismo que las celdas que cambió.
+ *
+ *  Al deshacer, cada entrada se intercambia con el valor actual de la
+ *  celda, así queda guardado el valor nuevo para rehacerla, y al rehacer se
+ *  vuelve a intercambiar. Un cambio nuevo descarta lo que se podía rehacer.
+ *
+ * @author Haris Muneer.
+ */
+public class MoveLog
+{
+    /**
+     * Índices de las celdas cambiadas.
+     */
+    private int cells[] = new int[64];
+
+    /**
+     * Valor de cada celda antes del cambio (después, si la jugada está deshecha).
+     */
+    private byte values[] = new byte[64];
+
+    /**
+     * Entradas de las jugadas hechas, más las de la que se está haciendo.
+     */
+    private int size;
+
+    /**
+     * Primera entrada de cada jugada. marks[done] es donde empieza la que se
+     *  está haciendo, y marks[total] el final de las deshechas.
+     */
+    private int marks[] = new int[16];
+
+    /**
+     * Jugadas hechas, y hechas más deshechas.
+     */
+    private int done, total;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Apunta un cambio de la jugada que se está haciendo.
+     *
+     * @param cell Índice de la celda.
+     * @param old Valor de la celda antes del cambio.
+     */
+    void add(int cell, byte old)
+    {
+        // A new change, what was undone can't be redone now
+        total = done;
+
+        if (size == cells.length)
+        {
+            cells = Arrays.copyOf(cells, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+
+        cells[size] = cell;
+        values[size] = old;
+        size++;
+    }
+
+    /**
+     * Cierra la jugada que se está haciendo, si ha cambiado algo.
+     */
+    void mark()
+    {
+        if (size == marks[done])
+            return;
+
+        if (done + 1 == marks.length)
+            marks = Arrays.copyOf(marks, marks.length * 2);
+
+        done++;
+        total = done;
+        marks[done] = size;
+    }
+
+    /**
+     * Pasa a deshacer la última jugada hecha.
+     *
+     * @return Número de la jugada, para {@link #start(int)} y {@link #end(int)}.
+     */
+    int undo()
+    {
+        mark();
+
+        done--;
+        size = marks[done];
+
+        return done;
+    }
+
+    /**
+     * Pasa a rehacer la última jugada deshecha.
+     *
+     * @return Número de la jugada, para {@link #start(int)} y {@link #end(int)}.
+     */
+    int redo()
+    {
+        done++;
+        size = marks[done];
+
+        return done - 1;
+    }
+
+    /**
+     * Primera entrada de una jugada.
+     */
+    int start(int move)
+    {
+        return marks[move];
+    }
+
+    /**
+     * Entrada siguiente a la última de una jugada.
+     */
+    int end(int move)
+    {
+        return marks[move + 1];
+    }
+
+    /**
+     * Celda de una entrada.
+     */
+    int getCell(int entry)
+    {
+        return cells[entry];
+    }
+
+    /**
+     * Cambia el valor guardado de una entrada por el actual de la celda.
+     *
+     * @param entry Índice de la entrada.
+     * @param current Valor actual de la celda.
+     * @return El valor que había guardado, que es el que hay que poner.
+     */
+    byte swap(int entry, byte current)
+    {
+        byte stored = values[entry];
+
+        values[entry] = current;
+
+        return stored;
+    }
+
+    /**
+     * Borra todo el registro.
+     */
+    void clear()
+    {
+        size = done = total = 0;
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Comprueba si hay alguna jugada que deshacer.
+     *
+     * @return TRUE si la hay.
+     */
+    public boolean canUndo()
+    {
+        return done > 0 || size > marks[0];
+    }
+
+    /**
+     * Comprueba si hay alguna jugada deshecha que rehacer.
+     *
+     * @return TRUE si la hay.
+     */
+    public boolean canRedo()
+    {
+        return total > done;
+    }
+}
@@ -0,0 +1,182 @@
+package minesweeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generador de tableros que se pueden terminar sin adivinar nada. Cada
+ *  tablero tiene una celda de salida sin minas alrededor (en el centro), y
+ *  solo se acepta si el {@link Solver}, empezando por ella, llega a descubrir
+ *  todas las celdas sin mina.
+ *
+ *  Los candidatos se prueban en paralelo en un ForkJoinPool propio, con hilos
+ *  de prioridad mínima como el de {@link BoardPool}: cada hilo tiene su
+ *  propio generador (sacado con split()) y se queda el primer tablero que pase.
+ *
+ * @author Haris Muneer.
+ */
+public class NoGuessGenerator
+{
+    /**
+     * Número máximo de candidatos a probar antes de rendirse.
+     */
+    private static final int MAX_CANDIDATES = 10000;
+
+    /**
+     * Hilos donde se prueban los candidatos, uno por procesador. Son daemon y
+     *  de prioridad mínima, así no le quitan tiempo a la ventana ni al resto
+     *  de tareas del ForkJoinPool común.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+        (ForkJoinPool pool) -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("no-guess-" + t.getPoolIndex());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }, null, false);
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Celda de salida para un tamaño de tablero.
+     *
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @return Índice de la celda central.
+     */
+    public static int startCell(int rows, int cols)
+    {
+        return (rows / 2) * cols + cols / 2;
+    }
+
+    /**
+     * Genera un tablero sin adivinar.
+     *
+     * @param mines Número de minas.
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param random Generador del que sacar los de cada hilo.
+     * @return El tablero, con las celdas tapadas, o null si no se encuentra
+     *  ninguno en {@link #MAX_CANDIDATES} candidatos.
+     */
+    public static Tablero generate(int mines, int rows, int cols, SplittableRandom random)
+    {
+        int cell = startCell(rows, cols);
+
+        AtomicReference<Tablero> found = new AtomicReference<>();
+        AtomicInteger tried = new AtomicInteger();
+
+        List<Search> searches = new ArrayList<>();
+
+        for (int w = 0; w < POOL.getParallelism(); w++)
+            searches.add(new Search(mines, rows, cols, cell, random.split(), found, tried));
+
+        POOL.invoke(new RecursiveAction() {
+            @Override
+            protected void compute()
+            {
+                ForkJoinTask.invokeAll(searches);
+            }
+        });
+
+        return found.get();
+    }
+
+    /**
+     * Comprueba si el solver termina un tablero empezando por su celda de salida.
+     *  Deja el tablero otra vez tapado.
+     *
+     * @param board El tablero.
+     * @return TRUE si se termina sin adivinar.
+     */
+    public static boolean isSolvable(Tablero board)
+    {
+        int start = board.getStartCell();
+
+        if (start < 0)
+            return false;
+
+        int cols = board.getCols();
+        Solver solver = new Solver(board);
+
+        solver.update(board.reveal(start % cols, start / cols));
+
+        int safe[] = solver.getSafeCells();
+
+        while (safe.length > 0)
+        {
+            for (int i : safe)
+            {
+                if (!board.isRevealed(i))
+                    solver.update(board.reveal(i % cols, i / cols));
+            }
+
+            safe = solver.getSafeCells();
+        }
+
+        boolean solved = board.isFinished(false) && !board.isLost();
+
+        board.resetBoard();
+
+        return solved;
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Búsqueda de un hilo: prueba candidatos hasta que alguien encuentra uno.
+     */
+    private static class Search extends RecursiveAction
+    {
+        private final int mines, rows, cols, cell;
+        private final SplittableRandom random;
+        private final AtomicReference<Tablero> found;
+        private final AtomicInteger tried;
+
+        /**
+         * Constructor de la clase.
+         *
+         * @param mines Número de minas.
+         * @param rows Filas del tablero.
+         * @param cols Columnas del tablero.
+         * @param cell Celda de salida.
+         * @param random Generador propio de este hilo.
+         * @param found Donde dejar el tablero encontrado.
+         * @param tried Cuenta de candidatos probados entre todos.
+         */
+        Search(int mines, int rows, int cols, int cell, SplittableRandom random,
+               AtomicReference<Tablero> found, AtomicInteger tried)
+        {
+            this.mines = mines;
+            this.rows = rows;
+            this.cols = cols;
+            this.cell = cell;
+            this.random = random;
+            this.found = found;
+            this.tried = tried;
+        }
+
+        @Override
+        protected void compute()
+        {
+            while (found.get() == null && tried.getAndIncrement() < MAX_CANDIDATES)
+            {
+                Tablero board = new Tablero(mines, rows, cols, random.nextLong(), cell);
+
+                if (isSolvable(board))
+                {
+                    found.compareAndSet(null, board);
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package minesweeper;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Lee una repetición escrita con {@link ReplayWriter} jugada a jugada, sin
+ *  cargarla entera, y la puede volver a jugar sobre un {@link GameEngine}.
+ *
+ *  Uso: después del constructor (que lee la cabecera), cada llamada a
+ *  {@link #next()} pasa a la siguiente jugada, que se consulta con
+ *  {@link #getCell()}, {@link #getAction()} y {@link #getDelay()}.
+ *
+ * @author Haris Muneer.
+ */
+public class ReplayReader
+{
+    /**
+     * De donde se lee.
+     */
+    private final DataInputStream in;
+
+    /**
+     * Datos de la cabecera.
+     */
+    private final long playedAt;
+    private final int rows, cols, mines;
+    private final long seed;
+    private final int startCell;
+    private final byte mineBits[];
+
+    /**
+     * Jugada actual.
+     */
+    private int cell, action;
+    private long delay;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase. Lee la cabecera.
+     *
+     * @param in De donde leer la repetición.
+     * @throws IOException Si la cabecera no tiene un formato válido.
+     */
+    public ReplayReader(InputStream in) throws IOException
+    {
+        this.in = new DataInputStream(in);
+
+        if (this.in.readInt() != ReplayWriter.MAGIC)
+            throw new IOException("No es una repetición");
+
+        int version = this.in.readUnsignedByte();
+
+        if (version < 1 || version > ReplayWriter.VERSION)
+            throw new IOException("Versión de repetición no soportada: " + version);
+
+        playedAt = readVarint(in);
+        rows = (int)readVarint(in);
+        cols = (int)readVarint(in);
+        mines = (int)readVarint(in);
+
+        if (rows <= 0 || cols <= 0 || rows > Tablero.MAX_SIDE || cols > Tablero.MAX_SIDE)
+            throw new IOException("Tamaño de tablero no válido: " + rows + "x" + cols);
+
+        int layout = this.in.readUnsignedByte();
+
+        if (layout == ReplayWriter.SEED_LAYOUT)
+        {
+            seed = this.in.readLong();
+            startCell = (int)readVarint(in) - 1;
+            mineBits = null;
+        }
+        else if (layout == ReplayWriter.BITMAP_LAYOUT)
+        {
+            seed = 0;
+            startCell = -1;
+            mineBits = new byte[(rows * cols + 7) / 8];
+            this.in.readFully(mineBits);
+        }
+        else
+            throw new IOException("Tipo de tablero no válido: " + layout);
+    }
+
+    /**
+     * Pasa a la siguiente jugada.
+     *
+     * @return TRUE si hay otra, FALSE si se ha acabado (con END o porque la
+     *  repetición se cortó, por ejemplo al cerrarse el juego sin terminarla).
+     * @throws IOException Si hay algún error al leer.
+     */
+    public boolean next() throws IOException
+    {
+        int first = in.read();
+
+        if (first < 0)
+            return false;
+
+        long move = readVarint(in, first);
+
+        action = (int)(move & 3);
+        cell = (int)(move >>> 2);
+
+        if (action == ReplayWriter.END)
+        {
+            if (cell == 0)
+                return false;
+
+            // Undo and redo, they have no cell
+            action = ReplayWriter.END + cell;
+            cell = -1;
+
+            if (action > ReplayWriter.REDO)
+                throw new IOException("Acción no válida: " + action);
+        }
+        else if (cell >= rows * cols)
+            throw new IOException("Celda fuera del tablero: " + cell);
+
+        delay = readVarint(in);
+
+        return true;
+    }
+
+    /**
+     * Crea el tablero de la repetición, sin nada descubierto.
+     *
+     * @return El tablero.
+     */
+    public Tablero createBoard()
+    {
+        if (mineBits == null)
+            return new Tablero(mines, rows, cols, seed, startCell);
+
+        // An empty board, then the recorded mines
+        Tablero board = new Tablero(0, rows, cols, 0);
+
+        for (int i = 0; i < rows * cols; i++)
+        {
+            if ((mineBits[i >> 3] & (1 << (i & 7))) != 0)
+                board.setMine(i, true);
+        }
+
+        board.setNumberOfMines(mines);
+        board.setSurroundingMinesNumber();
+
+        return board;
+    }
+
+    /**
+     * Vuelve a jugar la repetición (las jugadas que queden) sobre una partida
+     *  nueva del motor, con las mismas llamadas que hace la ventana. Las
+     *  jugadas se hacen en el hilo que llama.
+     *
+     * @param engine El motor donde jugarla, sin grabadora de repeticiones y
+     *  con deshacer activado si la repetición deshace jugadas.
+     * @param speed Veces más rápido que la partida original, 0 o menos para
+     *  no esperar entre jugadas.
+     * @return Cómo ha acabado la partida.
+     * @throws IOException Si hay algún error al leer.
+     * @throws InterruptedException Si se interrumpe el hilo mientras espera.
+     */
+    public GameEngine.State play(GameEngine engine, double speed) throws IOException, InterruptedException
+    {
+        engine.setBoard(createBoard());
+
+        while (next())
+        {
+            if (speed > 0 && delay > 0)
+                Thread.sleep((long)(delay / speed));
+
+            int x = cell % cols, y = cell / cols;
+
+            if (action == ReplayWriter.REVEAL)
+                engine.reveal(x, y);
+            else if (action == ReplayWriter.FLAG)
+                engine.toggleFlag(x, y);
+            else if (action == ReplayWriter.CHORD)
+                engine.chord(x, y);
+            else if (action == ReplayWriter.UNDO)
+                engine.undo();
+            else
+                engine.redo();
+        }
+
+        return engine.getState();
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Recorre las repeticiones de un archivo de {@link ReplayRecorder} una a una.
+     *
+     * @param archive El archivo.
+     * @param action Lo que hacer con cada repetición, recién leída la cabecera.
+     *  Las que tienen la cabecera cortada se saltan, y si la última está
+     *  cortada el archivo acaba antes de ella.
+     * @return Número de repeticiones leídas.
+     * @throws IOException Si hay algún error al leer.
+     */
+    public static int readArchive(File archive, Consumer<ReplayReader> action) throws IOException
+    {
+        int count = 0;
+        long left = archive.length();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(archive))))
+        {
+            int first;
+
+            while ((first = in.read()) >= 0)
+            {
+                byte replay[];
+
+                try
+                {
+                    long length = readVarint(in, first);
+
+                    left -= varintSize(length);
+
+                    // Only the last one can be cut, and its size can't be trusted
+                    if (length < 0 || length > Math.min(left, Integer.MAX_VALUE))
+                        break;
+
+                    replay = new byte[(int)length];
+                    in.readFully(replay);
+                    left -= length;
+                }
+                catch (EOFException ex)
+                {
+                    break;
+                }
+
+                ReplayReader reader;
+
+                try
+                {
+                    reader = new ReplayReader(new ByteArrayInputStream(replay));
+                }
+                catch (IOException ex)
+                {
+                    // Cut while the header was being written, the rest is fine
+                    continue;
+                }
+
+                action.accept(reader);
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Lee un entero sin signo en formato varint.
+     *
+     * @param in De donde leer.
+     * @return El entero.
+     * @throws IOException Si se acaba la entrada o el varint es demasiado largo.
+     */
+    static long readVarint(InputStream in) throws IOException
+    {
+        int first = in.read();
+
+        if (first < 0)
+            throw new EOFException();
+
+        return readVarint(in, first);
+    }
+
+    /**
+     * Lee un entero en formato varint del que ya se ha leído el primer byte.
+     */
+    private static long readVarint(InputStream in, int first) throws IOException
+    {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+
+        while ((b & 0x80) != 0)
+        {
+            if (shift > 63)
+                throw new IOException("Varint demasiado largo");
+
+            b = in.read();
+
+            if (b < 0)
+                throw new EOFException();
+
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        }
+
+        return value;
+    }
+
+    /**
+     * Bytes que ocupa un entero en formato varint.
+     */
+    private static int varintSize(long value)
+    {
+        int size = 1;
+
+        while ((value & ~0x7FL) != 0)
+        {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Getter del momento de la partida.
+     *
+     * @return Milisegundos desde 1970.
+     */
+    public long getPlayedAt()
+    {
+        return playedAt;
+    }
+
+    /**
+     * Getter de las filas del tablero.
+     *
+     * @return Filas.
+     */
+    public int getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Getter de las columnas del tablero.
+     *
+     * @return Columnas.
+     */
+    public int getCols()
+    {
+        return cols;
+    }
+
+    /**
+     * Getter del número de minas del tablero.
+     *
+     * @return Minas.
+     */
+    public int getMines()
+    {
+        return mines;
+    }
+
+    /**
+     * Getter de la celda de la jugada actual.
+     *
+     * @return Índice de la celda, -1 para deshacer y rehacer.
+     */
+    public int getCell()
+    {
+        return cell;
+    }
+
+    /**
+     * Getter de la acción de la jugada actual.
+     *
+     * @return REVEAL, FLAG, CHORD, UNDO o REDO de {@link ReplayWriter}.
+     */
+    public int getAction()
+    {
+        return action;
+    }
+
+    /**
+     * Getter del tiempo desde la jugada anterior.
+     *
+     * @return Milisegundos.
+     */
+    public long getDelay()
+    {
+        return delay;
+    }
+}
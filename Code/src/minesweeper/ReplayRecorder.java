@@ -0,0 +1,225 @@
+package minesweeper;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.Executor;
+
+/**
+ * Graba las partidas como repeticiones mientras se juegan. {@link GameEngine}
+ *  le pasa cada partida nueva y cada jugada, y la escritura se hace en un
+ *  hilo de fondo, así jugar no espera al disco.
+ *
+ *  La partida en curso se va escribiendo en replays.tmp. Al acabar se añade
+ *  al archivo replays.dat, que es una lista de repeticiones, cada una
+ *  precedida de su tamaño en bytes como varint (se lee con
+ *  {@link ReplayReader#readArchive}). Si el juego se cerró sin acabar una,
+ *  se añade tal cual al abrir la grabadora.
+ *
+ * @author Haris Muneer.
+ */
+public class ReplayRecorder
+{
+    /**
+     * Archivo con las repeticiones terminadas.
+     */
+    private final File archive;
+
+    /**
+     * Repetición de la partida en curso.
+     */
+    private final File current;
+
+    /**
+     * Hilo de fondo donde se escribe. Todo lo que hay a partir de aquí solo se
+     *  usa en él.
+     */
+    private final Executor executor;
+
+    /**
+     * Escritor de la partida en curso, null si no hay ninguna.
+     */
+    private ReplayWriter writer;
+
+    /**
+     * Jugadas grabadas de la partida en curso.
+     */
+    private int moves;
+
+    /**
+     * Momento de la última jugada, de System.nanoTime(), o -1 si no se ha
+     *  jugado todavía. Solo se usa en el hilo que juega.
+     */
+    private long lastMove = -1;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param directory Directorio de los archivos de repeticiones.
+     * @param executor Hilo de fondo donde escribir (uno solo, las tareas van en orden).
+     */
+    public ReplayRecorder(File directory, Executor executor)
+    {
+        this.archive = new File(directory, "replays.dat");
+        this.current = new File(directory, "replays.tmp");
+        this.executor = executor;
+
+        executor.execute(() -> {
+            directory.mkdirs();
+
+            // Left by a game that was closed while playing
+            if (current.exists())
+                archiveCurrent();
+        });
+    }
+
+    /**
+     * Empieza a grabar una partida nueva, terminando la que hubiera.
+     *
+     * @param board El tablero, todavía sin jugar.
+     */
+    public void start(Tablero board)
+    {
+        long playedAt = System.currentTimeMillis();
+        int rows = board.getRows(), cols = board.getCols();
+        long seed = board.getSeed();
+        int startCell = board.getStartCell();
+        byte mineBits[] = ReplayWriter.mineBits(board);
+
+        lastMove = -1;
+
+        executor.execute(() -> {
+            finishCurrent();
+
+            try
+            {
+                moves = 0;
+                writer = new ReplayWriter(new BufferedOutputStream(new FileOutputStream(current)));
+                writer.writeHeader(playedAt, rows, cols, seed, startCell, mineBits);
+                writer.flush();
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Error grabando la repetición: " + ex.getMessage());
+                writer = null;
+            }
+        });
+    }
+
+    /**
+     * Graba una jugada de la partida en curso.
+     *
+     * @param cell Índice de la celda.
+     * @param action REVEAL, FLAG, CHORD, UNDO o REDO de {@link ReplayWriter}.
+     */
+    public void record(int cell, int action)
+    {
+        long now = System.nanoTime();
+        long delay = lastMove < 0 ? 0 : (now - lastMove) / 1000000;
+
+        lastMove = now;
+
+        executor.execute(() -> {
+            if (writer == null)
+                return;
+
+            try
+            {
+                writer.writeMove(cell, action, delay);
+                writer.flush();
+                moves++;
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Error grabando la repetición: " + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Termina la partida en curso y la añade al archivo.
+     */
+    public void finish()
+    {
+        executor.execute(this::finishCurrent);
+    }
+
+    /**
+     * Deja de grabar la partida en curso sin guardarla.
+     */
+    public void cancel()
+    {
+        executor.execute(() -> {
+            if (writer == null)
+                return;
+
+            try
+            {
+                writer.close();
+            }
+            catch (IOException ex)
+            {
+            }
+
+            writer = null;
+            current.delete();
+        });
+    }
+
+
+    //---------------------------BACKGROUND---------------------------//
+    /**
+     * Escribe el final de la partida en curso, si la hay, y la archiva.
+     */
+    private void finishCurrent()
+    {
+        if (writer == null)
+            return;
+
+        try
+        {
+            writer.writeEnd();
+            writer.close();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error grabando la repetición: " + ex.getMessage());
+        }
+
+        writer = null;
+
+        // A game that wasn't played isn't worth keeping
+        if (moves > 0)
+            archiveCurrent();
+        else
+            current.delete();
+    }
+
+    /**
+     * Añade la repetición de replays.tmp al archivo, con su tamaño delante, y la borra.
+     */
+    private void archiveCurrent()
+    {
+        try
+        {
+            byte replay[] = Files.readAllBytes(current.toPath());
+
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(archive, true)))
+            {
+                ReplayWriter.writeVarint(out, replay.length);
+                out.write(replay);
+            }
+
+            current.delete();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error archivando la repetición: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package minesweeper;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Escribe una repetición de partida en su formato binario compacto, que se
+ *  puede ir escribiendo mientras se juega y leer después con {@link ReplayReader}
+ *  sin cargarla entera.
+ *
+ *  Formato (versión 2):
+ *   int MAGIC, byte versión, varint momento de la partida (milisegundos desde 1970),
+ *   varint filas, varint columnas, varint minas, byte tipo de tablero y:
+ *    - SEED_LAYOUT: long semilla y varint celda de salida + 1, si con ellas
+ *      se vuelve a sacar el mismo tablero.
+ *    - BITMAP_LAYOUT: mapa de bits de las minas (un bit por celda en orden de
+ *      índice, redondeado a bytes).
+ *   Después, cada jugada es un varint (celda << 2 | acción) y un varint con los
+ *   milisegundos desde la jugada anterior. La acción END con celda 0 (sin
+ *   más datos) termina la repetición; con celda 1 es deshacer y con celda 2
+ *   rehacer, seguidas también de los milisegundos.
+ *  La versión 1 no tiene deshacer ni rehacer.
+ *  Los varint son enteros sin signo de 7 bits por byte, el bit alto indica
+ *  que sigue otro byte.
+ *
+ * @author Haris Muneer.
+ */
+public class ReplayWriter
+{
+    /**
+     * Marca del principio del formato ("MREP").
+     */
+    static final int MAGIC = 0x4D524550;
+
+    /**
+     * Versión del formato.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Tipos de tablero de la cabecera.
+     */
+    static final int SEED_LAYOUT = 0, BITMAP_LAYOUT = 1;
+
+    /**
+     * Acciones de las jugadas.
+     */
+    public static final int REVEAL = 0, FLAG = 1, CHORD = 2, END = 3;
+
+    /**
+     * Acciones que se guardan como END con celda 1 y 2.
+     */
+    public static final int UNDO = 4, REDO = 5;
+
+    /**
+     * Donde se escribe.
+     */
+    private final DataOutputStream out;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param out Donde escribir la repetición.
+     */
+    public ReplayWriter(OutputStream out)
+    {
+        this.out = new DataOutputStream(out);
+    }
+
+    /**
+     * Escribe la cabecera con el tablero. Usa la semilla si vuelve a dar las
+     *  mismas minas, y si no el mapa de bits.
+     *
+     * @param playedAt Momento de la partida, en milisegundos desde 1970.
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param seed Semilla del tablero.
+     * @param startCell Celda de salida del tablero, -1 si no tiene.
+     * @param mineBits Mapa de bits de las minas.
+     * @throws IOException Si hay algún error al escribir.
+     */
+    public void writeHeader(long playedAt, int rows, int cols, long seed, int startCell, byte mineBits[]) throws IOException
+    {
+        int mines = 0;
+
+        for (byte b : mineBits)
+            mines += Integer.bitCount(b & 0xFF);
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarint(out, playedAt);
+        writeVarint(out, rows);
+        writeVarint(out, cols);
+        writeVarint(out, mines);
+
+        if (sameLayout(mines, rows, cols, seed, startCell, mineBits))
+        {
+            out.writeByte(SEED_LAYOUT);
+            out.writeLong(seed);
+            writeVarint(out, startCell + 1);
+        }
+        else
+        {
+            out.writeByte(BITMAP_LAYOUT);
+            out.write(mineBits);
+        }
+    }
+
+    /**
+     * Escribe una jugada.
+     *
+     * @param cell Índice de la celda, no se usa para UNDO y REDO.
+     * @param action REVEAL, FLAG, CHORD, UNDO o REDO.
+     * @param delay Milisegundos desde la jugada anterior.
+     * @throws IOException Si hay algún error al escribir.
+     */
+    public void writeMove(int cell, int action, long delay) throws IOException
+    {
+        if (action > END)
+            writeVarint(out, (long)(action - END) << 2 | END);
+        else
+            writeVarint(out, (long)cell << 2 | action);
+
+        writeVarint(out, delay);
+    }
+
+    /**
+     * Escribe el final de la repetición.
+     *
+     * @throws IOException Si hay algún error al escribir.
+     */
+    public void writeEnd() throws IOException
+    {
+        writeVarint(out, END);
+    }
+
+    /**
+     * Manda lo escrito a la salida.
+     *
+     * @throws IOException Si hay algún error al escribir.
+     */
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    /**
+     * Cierra la salida.
+     *
+     * @throws IOException Si hay algún error al cerrar.
+     */
+    public void close() throws IOException
+    {
+        out.close();
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Saca el mapa de bits de las minas de un tablero.
+     *
+     * @param board El tablero.
+     * @return Un bit por celda en orden de índice.
+     */
+    public static byte[] mineBits(Tablero board)
+    {
+        int cells = board.getRows() * board.getCols();
+        byte bits[] = new byte[(cells + 7) / 8];
+
+        for (int i = 0; i < cells; i++)
+        {
+            if (board.isMine(i))
+                bits[i >> 3] |= 1 << (i & 7);
+        }
+
+        return bits;
+    }
+
+    /**
+     * Comprueba si la semilla vuelve a dar las minas de un mapa de bits.
+     */
+    private static boolean sameLayout(int mines, int rows, int cols, long seed, int startCell, byte mineBits[])
+    {
+        try
+        {
+            return Arrays.equals(mineBits(new Tablero(mines, rows, cols, seed, startCell)), mineBits);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // The mines don't fit around the start cell, it wasn't made that way
+            return false;
+        }
+    }
+
+    /**
+     * Escribe un entero sin signo en formato varint.
+     *
+     * @param out Donde escribir.
+     * @param value El entero.
+     * @throws IOException Si hay algún error al escribir.
+     */
+    static void writeVarint(OutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.write((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.write((int)value);
+    }
+}
@@ -1,14 +1,8 @@
 package minesweeper;
 
 import static java.lang.Math.ceil;
-import java.sql.Connection;
 import java.util.ArrayList;
 import java.sql.Date;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -56,6 +50,11 @@ public class Score
      */
     int currentLosingStreak;
     
+    /**
+     * Cambios todavía sin guardar en el almacén.
+     */
+    private Changes changes;
+    
     /**
      * Constructor de la clase.
      */
@@ -63,6 +62,7 @@ public class Score
     {
         gamesPlayed = gamesWon = currentStreak = longestLosingStreak = longestWinningStreak = currentWinningStreak = currentLosingStreak = 0;
         bestTimes = new ArrayList();
+        changes = new Changes();
     }
     
     /**
@@ -152,31 +152,34 @@ public class Score
     /**
      * Método para incrementar el número de partidas ganadas.
      */
-    public void incGamesWon()
+    public synchronized void incGamesWon()
     {
         gamesWon++;
+        changes.counters = true;
     }
     
     /**
      * Método para incrementar el número de partidas jugadas.
      */
-    public void incGamesPlayed()
+    public synchronized void incGamesPlayed()
     {
         gamesPlayed++;
+        changes.counters = true;
     }
     
     /**
      * Método para incrementar el número de partidas consecutivas.
      */
-    public void incCurrentStreak()
+    public synchronized void incCurrentStreak()
     {
         currentStreak++;
+        changes.counters = true;
     }
     
     /**
      * Método para incrementar el número de partidas perdidas consecutivas.
      */
-    public void incCurrentLosingStreak()
+    public synchronized void incCurrentLosingStreak()
     {
         currentLosingStreak++;
         
@@ -184,12 +187,14 @@ public class Score
         {
             longestLosingStreak = currentLosingStreak;
         }                
+        
+        changes.counters = true;
     }
 
     /**
      * Método para incrementar el número de partidas ganadas consecutivas.
      */
-    public void incCurrentWinningStreak()
+    public synchronized void incCurrentWinningStreak()
     {
         currentWinningStreak++;
         
@@ -197,22 +202,26 @@ public class Score
         {
             longestWinningStreak = currentWinningStreak;
         }                
+        
+        changes.counters = true;
     }
     
     /**
      * Método para decrementar el número de partidas consecutivas.
      */
-    public void decCurrentStreak()
+    public synchronized void decCurrentStreak()
     {        
         currentStreak--;
+        changes.counters = true;
     }    
     
     /**
      * Método para reiniciar el contador de partidas.
      */
-    public void resetScore()
+    public synchronized void resetScore()
     {
         gamesPlayed = gamesWon = currentStreak = longestLosingStreak = longestWinningStreak = currentWinningStreak = currentLosingStreak = 0;
+        changes.counters = true;
     }
     
     /**
@@ -232,13 +241,57 @@ public class Score
      * @param time Tiempo a añadir.
      * @param date Fecha de realización de ese tiempo.
      */
-    public void addTime(int time, Date date)
+    public synchronized void addTime(int time, Date date)
+    {
+        Time t = new Time(time,date);
+        changes.added.add(t);
+        
+        addTime(t);
+    }
+    
+    /**
+     * Método para añadir un tiempo que ya está en el almacén, al cargarlo.
+     * 
+     * @param id Identificador del tiempo en el almacén.
+     * @param time Tiempo a añadir.
+     * @param date Fecha de realización de ese tiempo.
+     */
+    synchronized void loadTime(int id, int time, Date date)
     {
-        bestTimes.add(new Time(time,date));
-        Collections.sort(bestTimes,new TimeComparator()); 
+        Time t = new Time(time,date);
+        t.id = id;
+        
+        addTime(t);
+    }
+    
+    /**
+     * Añade un tiempo en orden y elimina el peor si la lista tiene más de 5.
+     *  El eliminado se apunta para borrarlo del almacén, si ya estaba guardado.
+     * 
+     * @param t Tiempo a añadir.
+     */
+    private void addTime(Time t)
+    {
+        // The list is already sorted, so look for its place instead of sorting it again
+        int i = Collections.binarySearch(bestTimes, t, new TimeComparator());
+        
+        if (i < 0)
+            i = -i - 1;
+        
+        // After the ones with the same time
+        while (i < bestTimes.size() && bestTimes.get(i).getTimeValue() == t.getTimeValue())
+            i++;
+        
+        bestTimes.add(i, t);
         
         if(bestTimes.size() > 5)
-            bestTimes.remove(bestTimes.size()-1);
+        {
+            Time worst = bestTimes.remove(bestTimes.size()-1);
+            
+            // Never stored, so there's nothing to delete
+            if (!changes.added.remove(worst))
+                changes.removed.add(worst);
+        }
     }
      
     //--------------------------------------------------------//
@@ -248,144 +301,109 @@ public class Score
     
     //------------POPULATE FROM DATABASE------------//
     /**
-     * Método que accede a la base de datos para solicitar los mejores tiempos y resultados.
+     * Método que accede al almacén del juego para solicitar los mejores tiempos y resultados.
      * 
+     * @param storage Almacén del juego.
      * @return TRUE en caso de que todo haya ido bien, FALSE si ha habido algún error.
      */
-    public boolean populate()
+    public boolean populate(Storage storage)
     {
-        Connection connection = null;
-        Statement statement = null;
-        ResultSet resultSet = null;
-
-        try {
-            String dbURL = Game.dbPath; 
-
-            connection = DriverManager.getConnection(dbURL); 
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("SELECT * FROM SCORE");
-
-            while(resultSet.next()) 
-            {
-                gamesPlayed = resultSet.getInt("GAMES_PLAYED");
-                gamesWon = resultSet.getInt("GAMES_WON");
-
-                longestWinningStreak = resultSet.getInt("LWSTREAK");
-                longestLosingStreak = resultSet.getInt("LLSTREAK");
-
-                currentStreak = resultSet.getInt("CSTREAK");
-
-                currentWinningStreak = resultSet.getInt("CWSTREAK");
-                currentLosingStreak = resultSet.getInt("CLSTREAK");                                
-            }
-            
-            // cleanup resources, once after processing
-            resultSet.close();
-            statement.close();
-
-            
-            //------------------------LOAD TIMES------------------//
-            
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("SELECT * FROM TIME");
-            
-            
-            while(resultSet.next())
-            {
-                int time = resultSet.getInt("TIME_VALUE");
-                Date date = resultSet.getDate("DATE_VALUE");
-                
-                bestTimes.add(new Time(time,date));
-            }
-            
-            
-            // cleanup resources, once after processing
-            resultSet.close();
-            statement.close();
-            
-            
-            // and then finally close connection
-            connection.close();            
-            
-            return true;
-        }
-        catch(SQLException sqlex)
-        {
-            sqlex.printStackTrace();
-            return false;
-        }
+        return storage.loadScore(this);
     }
 
     /**
-     * Método para guardar los datos en la base de datos.
+     * Método para guardar los datos en el almacén del juego.
+     * 
+     * @param storage Almacén del juego.
+     * @return Milisegundos que ha tardado en guardar, -1 si ha habido algún error.
+     */
+    public long save(Storage storage)
+    {
+        return storage.saveScore(this);
+    }
+    
+    /**
+     * Se queda con los cambios sin guardar y empieza a apuntar otros nuevos.
+     *  Los contadores se copian tal y como están ahora.
+     * 
+     * @return Los cambios desde la última vez.
      */
-    public void save()
+    synchronized Changes takeChanges()
     {
-        Connection connection = null;
-        PreparedStatement statement = null;
+        Changes taken = changes;
+        changes = new Changes();
         
-
-        try {
-            String dbURL = Game.dbPath; 
-            
-            connection = DriverManager.getConnection(dbURL); 
-
-            
-            //----------EMPTY SCORE TABLE------//
-            String template = "DELETE FROM SCORE"; 
-            statement = connection.prepareStatement(template);
-            statement.executeUpdate();
-            
-            //----------EMPTY TIME TABLE------//
-            template = "DELETE FROM TIME"; 
-            statement = connection.prepareStatement(template);
-            statement.executeUpdate();
-            
-            //--------------INSERT DATA INTO SCORE TABLE-----------//            
-            template = "INSERT INTO SCORE (GAMES_PLAYED,GAMES_WON, LWSTREAK, LLSTREAK, CSTREAK, CWSTREAK, CLSTREAK) values (?,?,?,?,?,?,?)";
-            statement = connection.prepareStatement(template);
-            
-            statement.setInt(1, gamesPlayed);
-            statement.setInt(2, gamesWon);
-            statement.setInt(3, longestWinningStreak);
-            statement.setInt(4, longestLosingStreak);
-            statement.setInt(5, currentStreak);
-            statement.setInt(6, currentWinningStreak);
-            statement.setInt(7, currentLosingStreak);
-            
-            statement.executeUpdate();
-            
-            //-------------------INSERT DATA INTO TIME TABLE-----------//
-            template = "INSERT INTO TIME (TIME_VALUE, DATE_VALUE) values (?,?)";
-            statement = connection.prepareStatement(template);
-            
-
-            for (int i = 0; i < bestTimes.size(); i++)
-            {
-                statement.setInt(1, bestTimes.get(i).getTimeValue());
-                statement.setDate(2, bestTimes.get(i).getDateValue());
-                
-                statement.executeUpdate();            
-            }
-
-            //---------------------------------------------------------//
-            
-            statement.close();
-            
-            // and then finally close connection
-            connection.close();            
-        }
-        catch(SQLException sqlex)
+        taken.values = new int[] {gamesPlayed, gamesWon, longestWinningStreak, longestLosingStreak,
+                                  currentStreak, currentWinningStreak, currentLosingStreak};
+        taken.times = new ArrayList<>(bestTimes);
+        
+        return taken;
+    }
+    
+    /**
+     * Devuelve unos cambios que no se han podido guardar, para intentarlo la próxima vez.
+     * 
+     * @param failed Los cambios que no se han guardado.
+     */
+    synchronized void restoreChanges(Changes failed)
+    {
+        changes.counters |= failed.counters;
+        changes.removed.addAll(failed.removed);
+        
+        // Only the ones that are still among the best times
+        for (Time t : failed.added)
         {
-            sqlex.printStackTrace();
+            if (bestTimes.contains(t))
+                changes.added.add(t);
         }
-        
     }
 
     //--------------------------------------------------//
     
     
     //---------------------------------------------------//
+    /**
+     * Cambios de la puntuación desde la última vez que se guardó, para
+     *  escribir en el almacén solo lo que ha cambiado.
+     */
+    static class Changes
+    {
+        /**
+         * TRUE si ha cambiado algún contador.
+         */
+        boolean counters;
+        
+        /**
+         * Tiempos nuevos, sin guardar todavía.
+         */
+        ArrayList<Time> added = new ArrayList<>();
+        
+        /**
+         * Tiempos que ya no están entre los mejores y hay que borrar.
+         */
+        ArrayList<Time> removed = new ArrayList<>();
+        
+        /**
+         * Valores de los contadores al coger los cambios, en el orden de la tabla SCORE.
+         */
+        int values[];
+        
+        /**
+         * Mejores tiempos al coger los cambios.
+         */
+        ArrayList<Time> times;
+        
+        /**
+         * Comprueba si no hay nada que guardar.
+         * 
+         * @return TRUE si no ha cambiado nada.
+         */
+        boolean isEmpty()
+        {
+            return !counters && added.isEmpty() && removed.isEmpty();
+        }
+    }
+    
     /**
      * Clase interna para comparar tiempos.
      */
@@ -410,6 +428,11 @@ public class Score
         Date date;
         int time;
         
+        /**
+         * Identificador en el almacén, 0 si todavía no se ha guardado.
+         */
+        int id;
+        
         /**
          * Constructor.
          * 
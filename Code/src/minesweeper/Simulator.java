@@ -0,0 +1,311 @@
+package minesweeper;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulador de partidas sin ventana, para medir cuántas gana una
+ *  {@link Strategy} en cada tamaño de tablero y así ajustar la dificultad.
+ *
+ *  Las partidas se reparten entre todos los núcleos con un ForkJoinPool: el
+ *  rango de partidas se parte por la mitad hasta trozos de {@link #CHUNK}, y
+ *  cada mitad se lleva su propio generador (sacado con split()), así los
+ *  resultados con la misma semilla son los mismos con cualquier número de
+ *  hilos (las estrategias no deben depender del reloj, por eso
+ *  {@link Strategy#LEAST_LIKELY} limita sus cálculos por trabajo). Cada trozo cuenta en variables locales y al acabar lo suma a los
+ *  totales, que son LongAdder y no necesitan bloqueos.
+ *
+ *  Se puede lanzar desde la línea de comandos:
+ *  java minesweeper.Simulator [partidas] [random|least] [filas columnas minas]...
+ *
+ * @author Haris Muneer.
+ */
+public class Simulator
+{
+    /**
+     * Partidas que juega cada tarea sin partirse más.
+     */
+    private static final int CHUNK = 1000;
+
+    /**
+     * Valor de z para el intervalo de confianza del 95%.
+     */
+    private static final double Z95 = 1.959964;
+
+    /**
+     * Hilos donde se juegan las partidas.
+     */
+    private final ForkJoinPool pool;
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase.
+     *
+     * @param threads Número de hilos, uno por núcleo normalmente.
+     */
+    public Simulator(int threads)
+    {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Juega un número de partidas en un tamaño de tablero.
+     *
+     * @param mines Número de minas.
+     * @param rows Filas del tablero.
+     * @param cols Columnas del tablero.
+     * @param games Partidas a jugar.
+     * @param strategy Estrategia del jugador.
+     * @param seed Semilla de la que salen todos los tableros y decisiones.
+     * @return Los resultados sumados.
+     */
+    public Result run(int mines, int rows, int cols, long games, Strategy strategy, long seed)
+    {
+        Result result = new Result(mines, rows, cols);
+
+        pool.invoke(new Batch(result, strategy, 0, games, new SplittableRandom(seed)));
+
+        return result;
+    }
+
+    /**
+     * Para los hilos del simulador.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Trozo de partidas a jugar, que se parte en dos si es grande.
+     */
+    private static class Batch extends RecursiveAction
+    {
+        private final Result result;
+        private final Strategy strategy;
+        private final long from, to;
+        private final SplittableRandom random;
+
+        /**
+         * Constructor de la clase.
+         *
+         * @param result Donde sumar los resultados.
+         * @param strategy Estrategia del jugador.
+         * @param from Primera partida del trozo.
+         * @param to Partida siguiente a la última.
+         * @param random Generador propio del trozo.
+         */
+        Batch(Result result, Strategy strategy, long from, long to, SplittableRandom random)
+        {
+            this.result = result;
+            this.strategy = strategy;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > CHUNK)
+            {
+                long mid = (from + to) >>> 1;
+
+                // Split before forking so the streams don't depend on scheduling
+                SplittableRandom other = random.split();
+
+                invokeAll(new Batch(result, strategy, from, mid, random),
+                          new Batch(result, strategy, mid, to, other));
+                return;
+            }
+
+            long wins = 0, clicks = 0, guesses = 0;
+
+            for (long g = from; g < to; g++)
+            {
+                Tablero board = new Tablero(result.mines, result.rows, result.cols, random.nextLong());
+                GameEngine engine = new GameEngine(board, false);
+                Solver solver = engine.getSolver();
+
+                while (engine.getState() == GameEngine.State.READY || engine.getState() == GameEngine.State.PLAYING)
+                {
+                    int i = strategy.nextMove(engine, random);
+
+                    if (!solver.isSafe(i))
+                        guesses++;
+
+                    engine.reveal(i % result.cols, i / result.cols);
+                }
+
+                if (engine.getState() == GameEngine.State.WON)
+                    wins++;
+
+                clicks += engine.getClicks();
+            }
+
+            result.games.add(to - from);
+            result.wins.add(wins);
+            result.clicks.add(clicks);
+            result.guesses.add(guesses);
+        }
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Resultados de una simulación en un tamaño de tablero.
+     */
+    public static class Result
+    {
+        private final int mines, rows, cols;
+        private final LongAdder games = new LongAdder(), wins = new LongAdder();
+        private final LongAdder clicks = new LongAdder(), guesses = new LongAdder();
+
+        /**
+         * Constructor de la clase.
+         *
+         * @param mines Número de minas.
+         * @param rows Filas del tablero.
+         * @param cols Columnas del tablero.
+         */
+        Result(int mines, int rows, int cols)
+        {
+            this.mines = mines;
+            this.rows = rows;
+            this.cols = cols;
+        }
+
+        /**
+         * Getter de las partidas jugadas.
+         *
+         * @return Partidas jugadas.
+         */
+        public long getGames()
+        {
+            return games.sum();
+        }
+
+        /**
+         * Getter de las partidas ganadas.
+         *
+         * @return Partidas ganadas.
+         */
+        public long getWins()
+        {
+            return wins.sum();
+        }
+
+        /**
+         * Getter de la proporción de partidas ganadas.
+         *
+         * @return De 0 a 1.
+         */
+        public double getWinRate()
+        {
+            long n = getGames();
+
+            return n == 0 ? 0 : (double)getWins() / n;
+        }
+
+        /**
+         * Intervalo de confianza de Wilson de la proporción de partidas ganadas.
+         *
+         * @param z Valor de z de la confianza (1.96 para el 95%).
+         * @return Límites inferior y superior, de 0 a 1.
+         */
+        public double[] getWinRateInterval(double z)
+        {
+            long n = getGames();
+
+            if (n == 0)
+                return new double[] {0, 1};
+
+            double p = (double)getWins() / n;
+            double z2 = z * z;
+            double center = (p + z2 / (2 * n)) / (1 + z2 / n);
+            double half = z * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n)) / (1 + z2 / n);
+
+            return new double[] {Math.max(0, center - half), Math.min(1, center + half)};
+        }
+
+        /**
+         * Getter de la media de jugadas por partida.
+         *
+         * @return Jugadas por partida.
+         */
+        public double getAverageClicks()
+        {
+            long n = getGames();
+
+            return n == 0 ? 0 : (double)clicks.sum() / n;
+        }
+
+        /**
+         * Getter de la media de veces que hubo que adivinar por partida.
+         *
+         * @return Jugadas no seguras por partida (la primera cuenta).
+         */
+        public double getAverageGuesses()
+        {
+            long n = getGames();
+
+            return n == 0 ? 0 : (double)guesses.sum() / n;
+        }
+
+        @Override
+        public String toString()
+        {
+            double ci[] = getWinRateInterval(Z95);
+
+            return String.format("%s: %d partidas, ganadas %.2f%% (IC 95%% %.2f%% - %.2f%%), "
+                    + "%.1f jugadas, %.2f adivinanzas",
+                    GameRecord.configOf(rows, cols, mines), getGames(), getWinRate() * 100,
+                    ci[0] * 100, ci[1] * 100, getAverageClicks(), getAverageGuesses());
+        }
+    }
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Simula partidas en los tableros dados, o en los tres de siempre.
+     *
+     * @param args Partidas, estrategia (random o least) y grupos de filas, columnas y minas.
+     */
+    public static void main(String args[])
+    {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        Strategy strategy = args.length > 1 && args[1].equals("least") ? Strategy.LEAST_LIKELY : Strategy.RANDOM_GUESS;
+
+        int configs[][];
+
+        if (args.length > 2)
+        {
+            configs = new int[(args.length - 2) / 3][];
+
+            for (int k = 0; k < configs.length; k++)
+                configs[k] = new int[] {Integer.parseInt(args[2 + 3 * k]),
+                                        Integer.parseInt(args[3 + 3 * k]),
+                                        Integer.parseInt(args[4 + 3 * k])};
+        }
+        else
+            configs = new int[][] {{9, 9, 10}, {16, 16, 40}, {16, 30, 99}};
+
+        Simulator simulator = new Simulator(Runtime.getRuntime().availableProcessors());
+        long seed = new SplittableRandom().nextLong();
+
+        for (int c[] : configs)
+        {
+            long start = System.nanoTime();
+            Result result = simulator.run(c[2], c[0], c[1], games, strategy, seed);
+
+            System.out.println(result + " (" + (System.nanoTime() - start) / 1000000 + " ms)");
+        }
+
+        simulator.shutdown();
+    }
+}
@@ -0,0 +1,468 @@
+package minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * Deduce, a partir de lo que se ve de un {@link Tablero}, qué celdas tapadas
+ *  son seguras y cuáles son mina sin ninguna duda. Solo usa las celdas
+ *  descubiertas y sus números (las banderas del jugador pueden estar mal).
+ *
+ *  Cada celda descubierta con vecinas tapadas es una restricción: entre esas
+ *  vecinas hay tantas minas como su número menos las minas ya deducidas.
+ *  Se aplican dos reglas:
+ *   - de una celda: si no quedan minas, todas sus vecinas son seguras; si
+ *     quedan tantas como vecinas, todas son mina.
+ *   - de dos celdas cercanas A y B: si la diferencia de minas es igual a las
+ *     vecinas que solo tiene A, esas son todas mina y las que solo tiene B
+ *     son seguras (incluye el caso de que una esté contenida en la otra).
+ *
+ *  Es incremental: después de cada jugada solo se vuelven a mirar las
+ *  restricciones que han cambiado, las de las celdas descubiertas y las de
+ *  sus vecinas, y las de las vecinas de cada celda deducida.
+ *
+ * @author Haris Muneer.
+ */
+public class Solver
+{
+    /**
+     * No se sabe nada de la celda.
+     */
+    private static final byte UNKNOWN = 0;
+
+    /**
+     * La celda es segura.
+     */
+    private static final byte SAFE = 1;
+
+    /**
+     * La celda es mina.
+     */
+    private static final byte MINE = 2;
+
+    /**
+     * El tablero que se resuelve.
+     */
+    private final Tablero board;
+
+    /**
+     * Filas y columnas del tablero.
+     */
+    private final int rows, cols;
+
+    /**
+     * Lo que se sabe de cada celda.
+     */
+    private final byte known[];
+
+    /**
+     * Celdas descubiertas que ya se han tenido en cuenta.
+     */
+    private final boolean seen[];
+
+    /**
+     * Cola circular de restricciones por mirar, y si cada celda está en ella.
+     */
+    private final int queue[];
+    private final boolean queued[];
+    private int head, size;
+
+    /**
+     * Celdas deducidas como seguras, en el orden en que se dedujeron.
+     */
+    private int safeCells[];
+    private int safeCount;
+
+    /**
+     * Celdas deducidas como mina, en el orden en que se dedujeron.
+     */
+    private int mineCells[];
+    private int mineCount;
+
+    /**
+     * Vecinas tapadas sin deducir de las dos restricciones que se comparan.
+     */
+    private final int varsA[] = new int[8], varsB[] = new int[8];
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Constructor de la clase. Tiene en cuenta las celdas que ya estén descubiertas.
+     *
+     * @param board El tablero que se resuelve.
+     */
+    public Solver(Tablero board)
+    {
+        this.board = board;
+        this.rows = board.getRows();
+        this.cols = board.getCols();
+
+        int cells = rows * cols;
+
+        known = new byte[cells];
+        seen = new boolean[cells];
+        queue = new int[cells];
+        queued = new boolean[cells];
+        safeCells = new int[16];
+        mineCells = new int[16];
+
+        for (int i = 0; i < cells; i++)
+        {
+            if (board.isRevealed(i) && !board.isMine(i))
+                see(i);
+        }
+
+        propagate();
+    }
+
+    /**
+     * Tiene en cuenta las celdas cambiadas en la última jugada y deduce lo que se pueda.
+     *
+     * @param changed Índices de las celdas cambiadas, como los devuelve {@link Tablero#reveal(int, int)}.
+     */
+    public void update(int changed[])
+    {
+        for (int i : changed)
+        {
+            // A revealed mine ends the game, there's nothing to solve then
+            if (!seen[i] && board.isRevealed(i) && !board.isMine(i))
+            {
+                see(i);
+
+                // Its revealed neighbours have one unknown cell less
+                enqueueNeighbours(i);
+            }
+        }
+
+        propagate();
+    }
+
+
+    //-----------------------------RULES--------------------------------//
+    /**
+     * Mira las restricciones de la cola hasta que no quede ninguna.
+     */
+    private void propagate()
+    {
+        while (size > 0)
+        {
+            int i = queue[head];
+
+            head = (head + 1) % queue.length;
+            size--;
+            queued[i] = false;
+
+            evaluate(i);
+        }
+    }
+
+    /**
+     * Aplica las reglas a la restricción de una celda descubierta.
+     *
+     * @param a Índice de la celda.
+     */
+    private void evaluate(int a)
+    {
+        int nA = unknownNeighbours(a, varsA);
+
+        if (nA == 0)
+            return;
+
+        int cA = minesLeft(a);
+
+        if (cA == 0 || cA == nA)
+        {
+            for (int k = 0; k < nA; k++)
+                mark(varsA[k], cA == 0 ? SAFE : MINE);
+
+            return;
+        }
+
+        // Constraints that can share cells are at most two cells away
+        int ax = a % cols, ay = a / cols;
+
+        for (int by = Math.max(0, ay - 2); by <= Math.min(rows - 1, ay + 2); by++)
+        {
+            for (int bx = Math.max(0, ax - 2); bx <= Math.min(cols - 1, ax + 2); bx++)
+            {
+                int b = by * cols + bx;
+
+                // Look at it again with what was found, against the rest too
+                if (b != a && seen[b] && compare(a, nA, cA, b))
+                {
+                    enqueue(a);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Aplica la regla de dos celdas a una pareja de restricciones.
+     *
+     * @param a Índice de la primera celda, cuyas vecinas están en varsA.
+     * @param nA Número de vecinas de la primera.
+     * @param cA Minas que quedan entre las vecinas de la primera.
+     * @param b Índice de la segunda celda.
+     * @return TRUE si se ha deducido algo.
+     */
+    private boolean compare(int a, int nA, int cA, int b)
+    {
+        int nB = unknownNeighbours(b, varsB);
+
+        if (nB == 0)
+            return false;
+
+        int shared = 0;
+
+        for (int k = 0; k < nA; k++)
+        {
+            if (contains(varsB, nB, varsA[k]))
+                shared++;
+        }
+
+        if (shared == 0)
+            return false;
+
+        int onlyA = nA - shared, onlyB = nB - shared;
+        int cB = minesLeft(b);
+
+        if (cA - cB == onlyA && onlyA + onlyB > 0)
+        {
+            markDifference(varsA, nA, varsB, nB, MINE);
+            markDifference(varsB, nB, varsA, nA, SAFE);
+            return true;
+        }
+
+        if (cB - cA == onlyB && onlyA + onlyB > 0)
+        {
+            markDifference(varsB, nB, varsA, nA, MINE);
+            markDifference(varsA, nA, varsB, nB, SAFE);
+            return true;
+        }
+
+        return false;
+    }
+
+
+    //-----------------------------HELPERS------------------------------//
+    /**
+     * Apunta una celda como descubierta y mete su restricción en la cola.
+     *
+     * @param i Índice de la celda.
+     */
+    private void see(int i)
+    {
+        seen[i] = true;
+
+        if (known[i] == UNKNOWN)
+            known[i] = SAFE;
+
+        enqueue(i);
+    }
+
+    /**
+     * Apunta lo deducido de una celda y mete en la cola las restricciones que la tocan.
+     *
+     * @param i Índice de la celda.
+     * @param value SAFE o MINE.
+     */
+    private void mark(int i, byte value)
+    {
+        if (known[i] != UNKNOWN)
+            return;
+
+        known[i] = value;
+
+        if (value == SAFE)
+        {
+            if (safeCount == safeCells.length)
+                safeCells = Arrays.copyOf(safeCells, safeCount * 2);
+
+            safeCells[safeCount++] = i;
+        }
+        else
+        {
+            if (mineCount == mineCells.length)
+                mineCells = Arrays.copyOf(mineCells, mineCount * 2);
+
+            mineCells[mineCount++] = i;
+        }
+
+        enqueueNeighbours(i);
+    }
+
+    /**
+     * Apunta lo deducido de las celdas de un conjunto que no están en otro.
+     *
+     * @param from Celdas del primer conjunto.
+     * @param nFrom Número de celdas del primero.
+     * @param other Celdas del segundo conjunto.
+     * @param nOther Número de celdas del segundo.
+     * @param value SAFE o MINE.
+     */
+    private void markDifference(int from[], int nFrom, int other[], int nOther, byte value)
+    {
+        for (int k = 0; k < nFrom; k++)
+        {
+            if (!contains(other, nOther, from[k]))
+                mark(from[k], value);
+        }
+    }
+
+    /**
+     * Mete en la cola las celdas descubiertas vecinas de una celda.
+     *
+     * @param i Índice de la celda.
+     */
+    private void enqueueNeighbours(int i)
+    {
+        int x = i % cols, y = i / cols;
+
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(rows - 1, y + 1); ny++)
+        {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(cols - 1, x + 1); nx++)
+            {
+                int n = ny * cols + nx;
+
+                if (n != i && seen[n])
+                    enqueue(n);
+            }
+        }
+    }
+
+    /**
+     * Mete una restricción en la cola, si no está ya.
+     *
+     * @param i Índice de la celda.
+     */
+    private void enqueue(int i)
+    {
+        if (!queued[i])
+        {
+            queued[i] = true;
+            queue[(head + size) % queue.length] = i;
+            size++;
+        }
+    }
+
+    /**
+     * Busca las vecinas de una celda que están tapadas y sin deducir.
+     *
+     * @param i Índice de la celda.
+     * @param out Donde dejar sus índices.
+     * @return Cuántas hay.
+     */
+    private int unknownNeighbours(int i, int out[])
+    {
+        int x = i % cols, y = i / cols;
+        int n = 0;
+
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(rows - 1, y + 1); ny++)
+        {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(cols - 1, x + 1); nx++)
+            {
+                int c = ny * cols + nx;
+
+                if (known[c] == UNKNOWN)
+                    out[n++] = c;
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Minas que quedan por encontrar entre las vecinas de una celda descubierta.
+     *
+     * @param i Índice de la celda.
+     * @return Su número menos las vecinas deducidas como mina.
+     */
+    private int minesLeft(int i)
+    {
+        int x = i % cols, y = i / cols;
+        int left = board.getSurroundingMines(i);
+
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(rows - 1, y + 1); ny++)
+        {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(cols - 1, x + 1); nx++)
+            {
+                if (known[ny * cols + nx] == MINE)
+                    left--;
+            }
+        }
+
+        return left;
+    }
+
+    /**
+     * Comprueba si una celda está entre las primeras de un array.
+     *
+     * @param cells Array de índices.
+     * @param n Número de índices a mirar.
+     * @param i Índice a buscar.
+     * @return TRUE si está.
+     */
+    private static boolean contains(int cells[], int n, int i)
+    {
+        for (int k = 0; k < n; k++)
+        {
+            if (cells[k] == i)
+                return true;
+        }
+
+        return false;
+    }
+
+
+    //---------------------GETTERS AND SETTERS-------------------------//
+    /**
+     * Comprueba si se ha deducido que una celda tapada es segura.
+     *
+     * @param i Índice de la celda.
+     * @return TRUE si es segura seguro y todavía no se ha descubierto.
+     */
+    public boolean isSafe(int i)
+    {
+        return known[i] == SAFE && !seen[i];
+    }
+
+    /**
+     * Comprueba si se ha deducido que una celda es mina.
+     *
+     * @param i Índice de la celda.
+     * @return TRUE si es mina seguro.
+     */
+    public boolean isMine(int i)
+    {
+        return known[i] == MINE;
+    }
+
+    /**
+     * Getter de las celdas tapadas que se sabe que son seguras.
+     *
+     * @return Sus índices, en el orden en que se dedujeron.
+     */
+    public int[] getSafeCells()
+    {
+        int safe[] = new int[safeCount];
+        int n = 0;
+
+        for (int k = 0; k < safeCount; k++)
+        {
+            if (!seen[safeCells[k]])
+                safe[n++] = safeCells[k];
+        }
+
+        return Arrays.copyOf(safe, n);
+    }
+
+    /**
+     * Getter de las celdas que se sabe que son mina.
+     *
+     * @return Sus índices, en el orden en que se dedujeron.
+     */
+    public int[] getMines()
+    {
+        return Arrays.copyOf(mineCells, mineCount);
+    }
+}
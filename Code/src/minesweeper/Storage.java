@@ -0,0 +1,82 @@
+package minesweeper;
+
+/**
+ * Almacén de los datos del juego: la puntuación, los mejores tiempos y la
+ *  partida guardada, y el historial de partidas. Hay una implementación sobre la base de datos de Access
+ *  ({@link AccessStorage}) y otra sobre ficheros ({@link FileStorage}).
+ *
+ * @author Haris Muneer.
+ */
+public interface Storage
+{
+    /**
+     * Nombre del almacén, para mostrarlo.
+     *
+     * @return El nombre del almacén.
+     */
+    String getName();
+
+    /**
+     * Carga la puntuación y los mejores tiempos guardados.
+     *
+     * @param score Puntuación donde cargarlos.
+     * @return TRUE si todo ha ido bien, FALSE si ha habido algún error.
+     */
+    boolean loadScore(Score score);
+
+    /**
+     * Guarda la puntuación y los mejores tiempos.
+     *
+     * @param score Puntuación a guardar.
+     * @return Milisegundos que ha tardado, -1 si ha habido algún error.
+     */
+    long saveScore(Score score);
+
+    /**
+     * Carga el historial de partidas, pasándolas una a una en el orden en que se jugaron.
+     *
+     * @param history Historial donde sumarlas.
+     * @return TRUE si todo ha ido bien, FALSE si ha habido algún error.
+     */
+    boolean loadHistory(GameHistory history);
+
+    /**
+     * Añade una partida terminada al historial.
+     *
+     * @param record La partida.
+     * @return Milisegundos que ha tardado, -1 si ha habido algún error.
+     */
+    long addGame(GameRecord record);
+
+    /**
+     * Comprueba si hay una partida guardada.
+     *
+     * @return TRUE si la hay, FALSE en otro caso.
+     */
+    boolean hasSavedGame();
+
+    /**
+     * Lee la partida guardada, en el formato de {@link BoardSnapshot}.
+     *
+     * @return Los bytes de la partida, null si no la hay o ha habido algún error.
+     */
+    byte[] loadSavedGame();
+
+    /**
+     * Guarda una partida, en el formato de {@link BoardSnapshot}.
+     *
+     * @param snapshot Los bytes de la partida.
+     * @return Milisegundos que ha tardado, -1 si ha habido algún error.
+     */
+    long saveGame(byte snapshot[]);
+
+    /**
+     * Borra la partida guardada.
+     */
+    void deleteSavedGame();
+
+    /**
+     * Libera los recursos del almacén, al salir del juego.
+     */
+    void close();
+}
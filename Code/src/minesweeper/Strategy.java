@@ -0,0 +1,78 @@
+package minesweeper;
+
+import java.util.SplittableRandom;
+
+/**
+ * Estrategia de un jugador automático para {@link Simulator}: elige la
+ *  próxima celda a descubrir de una partida en marcha.
+ *
+ * @author Haris Muneer.
+ */
+public interface Strategy
+{
+    /**
+     * Subproblemas que puede recorrer el cálculo exacto de probabilidades en
+     *  {@link #LEAST_LIKELY}. Es un límite de trabajo y no de tiempo para que
+     *  la misma semilla dé siempre los mismos resultados.
+     */
+    long PROBABILITY_BUDGET = 100000;
+
+    /**
+     * Descubre las celdas que el solver sabe que son seguras y, si no hay
+     *  ninguna, una tapada al azar que no se sepa que es mina.
+     */
+    Strategy RANDOM_GUESS = (engine, random) -> {
+        int safe[] = engine.getSolver().getSafeCells();
+
+        if (safe.length > 0)
+            return safe[0];
+
+        Tablero board = engine.getBoard();
+        Solver solver = engine.getSolver();
+        int cells = board.getRows() * board.getCols();
+        int candidates[] = new int[cells];
+        int n = 0;
+
+        for (int i = 0; i < cells; i++)
+        {
+            if (!board.isRevealed(i) && !solver.isMine(i))
+                candidates[n++] = i;
+        }
+
+        return candidates[random.nextInt(n)];
+    };
+
+    /**
+     * Descubre las celdas que el solver sabe que son seguras y, si no hay
+     *  ninguna, la que tiene menos probabilidad de ser mina.
+     */
+    Strategy LEAST_LIKELY = (engine, random) -> {
+        int safe[] = engine.getSolver().getSafeCells();
+
+        if (safe.length > 0)
+            return safe[0];
+
+        Tablero board = engine.getBoard();
+        double p[] = MineProbability.computeLimited(board, PROBABILITY_BUDGET).getProbabilities();
+        int best = -1;
+
+        for (int i = 0; i < p.length; i++)
+        {
+            if (!board.isRevealed(i) && (best < 0 || p[i] < p[best]))
+                best = i;
+        }
+
+        return best;
+    };
+
+
+    //------------------------------------------------------------------//
+    /**
+     * Elige la próxima celda a descubrir.
+     *
+     * @param engine La partida, que ya ha empezado o está por empezar.
+     * @param random Generador para las decisiones al azar, propio del hilo que juega.
+     * @return Índice de una celda tapada.
+     */
+    int nextMove(GameEngine engine, SplittableRandom random);
+}
@@ -1,12 +1,8 @@
 package minesweeper;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
-import javafx.util.Pair;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  *  Tablero del juego.
@@ -15,15 +11,47 @@ import javafx.util.Pair;
  */
 public class Tablero 
 {
+    /**
+     * Máscara del número de minas adyacentes (de 0 a 8).
+     */
+    static final int NEIGHBOURS_MASK = 0x0F;
+    /**
+     * Bit que indica que la celda tiene una mina.
+     */
+    static final int MINE = 0x10;
+    /**
+     * Bit que indica que la celda tiene una bandera.
+     */
+    static final int FLAG = 0x20;
+    /**
+     * Bit que indica que la celda está descubierta.
+     */
+    static final int REVEALED = 0x40;
+
+    /**
+     * Contenido textual de las celdas descubiertas, indexado por número de
+     *  minas adyacentes, para no crear cadenas al consultar el contenido.
+     */
+    private static final String NUMBERS[] = {"0", "1", "2", "3", "4", "5", "6", "7", "8"};
+
+    /**
+     * Filas o columnas que puede tener como mucho un tablero leído de un
+     *  fichero. El juego no crea ninguno tan grande; el límite solo evita que
+     *  un fichero dañado pida memoria sin fin.
+     */
+    public static final int MAX_SIDE = 1000;
+
     /**
      * Número de minas en la partida.
      */
     private int numberOfMines;
     
     /**
-     * Array bidimensional con las celdas de la partida.
+     * Celdas de la partida empaquetadas en un byte cada una, ordenadas por filas
+     *  (índice = y * cols + x). Los 4 bits bajos guardan el número de minas
+     *  adyacentes y el resto los bits MINE, FLAG y REVEALED.
      */
-    private Cell cells[][];
+    private byte cells[];
 
     /**
      * Número de filas del tablero.
@@ -35,27 +63,147 @@ public class Tablero
      */
     private int cols;
 
+    /**
+     * Semilla con la que se han colocado las minas.
+     */
+    private long seed;
+
+    /**
+     * Celda de salida sin minas alrededor, -1 si no hay.
+     */
+    private int startCell;
+
+    /**
+     * Cola de índices reutilizada al descubrir zonas, se crea la primera vez.
+     */
+    private int queue[];
+
+    /**
+     * Registro de cambios para deshacer jugadas, null si no se guarda.
+     */
+    private MoveLog log;
+
+    /**
+     * Número de celdas con mina que hay realmente en el tablero.
+     */
+    private int placedMines;
+
+    /**
+     * Número de celdas sin mina descubiertas.
+     */
+    private int revealedSafeCells;
+
+    /**
+     * Número de banderas puestas.
+     */
+    private int flags;
+
+    /**
+     * Número de banderas puestas sobre una mina.
+     */
+    private int correctFlags;
+
+    /**
+     * Número de minas descubiertas (explotadas).
+     */
+    private int revealedMines;
+
         
     //---------------------------------------------//
     /**
-     * Constructor de la clase.
+     * Constructor de la clase. Coloca las minas con una semilla aleatoria.
+     * 
+     * @param numberOfMines Número de minas.
+     * @param r Número de filas.
+     * @param c Número de columnas.
      */
     public Tablero(int numberOfMines, int r, int c)
+    {
+        this(numberOfMines, r, c, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Constructor de la clase. La semilla del tablero se saca del generador
+     *  dado, así el tablero puede volver a crearse con {@link #getSeed()}.
+     * 
+     * @param numberOfMines Número de minas.
+     * @param r Número de filas.
+     * @param c Número de columnas.
+     * @param random Generador del que se saca la semilla.
+     */
+    public Tablero(int numberOfMines, int r, int c, SplittableRandom random)
+    {
+        this(numberOfMines, r, c, random.nextLong());
+    }
+
+    /**
+     * Constructor de la clase. La misma semilla genera siempre el mismo tablero.
+     * 
+     * @param numberOfMines Número de minas.
+     * @param r Número de filas.
+     * @param c Número de columnas.
+     * @param seed Semilla para colocar las minas.
+     */
+    public Tablero(int numberOfMines, int r, int c, long seed)
+    {
+        this(numberOfMines, r, c, seed, -1);
+    }
+
+    /**
+     * Constructor de la clase con una celda de salida: ni ella ni sus vecinas
+     *  tienen mina, así que al descubrirla se abre una zona. La misma semilla y
+     *  la misma celda generan siempre el mismo tablero.
+     * 
+     * @param numberOfMines Número de minas.
+     * @param r Número de filas.
+     * @param c Número de columnas.
+     * @param seed Semilla para colocar las minas.
+     * @param startCell Índice de la celda de salida, -1 si no hay.
+     */
+    public Tablero(int numberOfMines, int r, int c, long seed, int startCell)
     {
         this.rows = r;
         this.cols = c;
         this.numberOfMines = numberOfMines;
+        this.seed = seed;
+        this.startCell = startCell;
 
-        cells = new Cell[rows][cols];
+        cells = new byte[rows * cols];
 
+        int free[] = freeCells();
+
+        if (numberOfMines < 0 || numberOfMines > (free == null ? r * c : free.length))
+            throw new IllegalArgumentException("Número de minas no válido: " + numberOfMines);
+        
         //Step 1: First create a board with empty Cells
         createEmptyCells();         
 
-        //Step 2: Then set mines randomly at cells
-        setMines();
+        //Step 2: Then set mines randomly at cells (this also counts the
+        //surrounding mines("neighbours") of each cell as mines are placed)
+        setMines(new SplittableRandom(seed), free);
+    }
+
+    /**
+     * Constructor de copia. Copia las celdas y las cuentas, pero no el
+     *  registro para deshacer jugadas, así la copia se puede leer desde otro
+     *  hilo mientras el original sigue cambiando.
+     *
+     * @param other Tablero a copiar.
+     */
+    public Tablero(Tablero other)
+    {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.numberOfMines = other.numberOfMines;
+        this.seed = other.seed;
+        this.startCell = other.startCell;
+        this.cells = other.cells.clone();
 
-        //Step 3: Then set the number of surrounding mines("neighbours") at each cell
-        setSurroundingMinesNumber();
+        placedMines = other.placedMines;
+        revealedSafeCells = other.revealedSafeCells;
+        flags = other.flags;
+        correctFlags = other.correctFlags;
+        revealedMines = other.revealedMines;
     }
 
 
@@ -65,58 +213,169 @@ public class Tablero
      */
     public void createEmptyCells()
     {
-        for (int x = 0; x < cols; x++)
-        {
-            for (int y = 0; y < rows; y++)
-            {
-                cells[x][y] = new Cell();
-            }
-        }
+        Arrays.fill(cells, (byte)0);
+
+        placedMines = revealedSafeCells = flags = correctFlags = revealedMines = 0;
+
+        if (log != null)
+            log.clear();
     }
 
     //------------------------------------------------------------------//
     /**
      * 2º método a llamar. Colocador de minas.
+     *  Usa el algoritmo de Floyd sobre los índices de las celdas: cada
+     *  combinación de posiciones es igual de probable y solo se generan
+     *  numberOfMines números aleatorios, sea cual sea la densidad.
+     *  Según se coloca cada mina se actualiza la cuenta de sus vecinas, por lo
+     *  que no hace falta llamar después a {@link #setSurroundingMinesNumber()}.
+     * 
+     * @param random Generador de números aleatorios a usar.
+     */
+    public void setMines(SplittableRandom random)
+    {
+        setMines(random, null);
+    }
+
+    /**
+     * Colocador de minas solo en algunas celdas, con el algoritmo de Floyd
+     *  sobre las posiciones de la lista.
+     * 
+     * @param random Generador de números aleatorios a usar.
+     * @param free Índices de las celdas donde puede haber mina, null si en todas.
      */
-    public void setMines()
+    private void setMines(SplittableRandom random, int free[])
     {
-        int x,y;
-        boolean hasMine;
-        int currentMines = 0;                
+        int total = free == null ? rows * cols : free.length;
 
-        while (currentMines != numberOfMines)
+        for (int j = total - numberOfMines; j < total; j++)
         {
-            // Generate a random x coordinate (between 0 and cols)
-            x = (int)Math.floor(Math.random() * cols);
+            // Pick a random cell between 0 and j (both included)
+            int k = random.nextInt(j + 1);
+            int i = free == null ? k : free[k];
 
-            // Generate a random y coordinate (between 0 and rows)
-            y = (int)Math.floor(Math.random() * rows);
+            // If it already has a mine, j is new for sure
+            if (isMine(i))
+                i = free == null ? j : free[j];
 
-            hasMine = cells[x][y].getMine();
+            setMine(i, true);
+            addSurroundingMine(i);
+        }
+    }
+
+    /**
+     * Celdas donde puede haber mina: todas menos la de salida y sus vecinas.
+     * 
+     * @return Sus índices en orden, o null si no hay celda de salida.
+     */
+    private int[] freeCells()
+    {
+        if (startCell < 0)
+            return null;
+
+        int sx = startCell % cols, sy = startCell / cols;
+        int free[] = new int[rows * cols];
+        int n = 0;
+
+        for (int i = 0; i < free.length; i++)
+        {
+            if (Math.abs(i % cols - sx) > 1 || Math.abs(i / cols - sy) > 1)
+                free[n++] = i;
+        }
+
+        return Arrays.copyOf(free, n);
+    }
+
+    /**
+     * Suma una mina a la cuenta de minas adyacentes de las vecinas de una celda.
+     * 
+     * @param i Índice de la celda donde se ha puesto la mina.
+     */
+    private void addSurroundingMine(int i)
+    {
+        int x = i % cols;
+        int y = i / cols;
+
+        // Clamp the 3x3 window once, so the loops don't check the borders
+        int xMin = Math.max(x - 1, 0), xMax = Math.min(x + 1, cols - 1);
+        int yMin = Math.max(y - 1, 0), yMax = Math.min(y + 1, rows - 1);
 
-            if(!hasMine)
-            {		
-                cells[x][y].setMine(true);
-                currentMines++;	
-            }			
+        for (int row = yMin * cols; row <= yMax * cols; row += cols)
+        {
+            for (int j = row + xMin; j <= row + xMax; j++)
+            {
+                cells[j]++;
+            }
         }
+
+        // The cell itself is no neighbour (the count never goes over 9, so it fits)
+        cells[i]--;
     }
     //------------------------------------------------------------------//
 
     //------------------------------------------------------------------//
     /**
-     * 3er método a llamar. Asginador de minas que hay en su alrededor en cada casilla.
+     * Asignador de minas que hay en su alrededor en cada casilla, recalculándolas
+     *  todas a partir de las minas. Solo hace falta si las minas se han cambiado
+     *  a mano (por ejemplo, al cargar una partida).
+     *  Suma primero las minas de cada fila en ventanas de 3 y después suma
+     *  3 filas de esas sumas, así cada celda se lee un número fijo de veces.
      */
     public void setSurroundingMinesNumber()
     {	
-        for(int x = 0 ; x < cols ; x++) 
+        int above[] = new int[cols];
+        int current[] = new int[cols];
+        int below[] = new int[cols];
+
+        sumRowMines(0, current);
+
+        for(int y = 0 ; y < rows ; y++) 
         {
-            for(int y = 0 ; y < rows ; y++) 
+            if (y + 1 < rows)
+                sumRowMines(y + 1, below);
+            else
+                Arrays.fill(below, 0);
+
+            int row = y * cols;
+
+            for(int x = 0 ; x < cols ; x++) 
             {
-                cells[x][y].setSurroundingMines(calculateNeighbours(x,y));                        
+                int neighbours = above[x] + current[x] + below[x] - ((cells[row + x] & MINE) >> 4);
+
+                cells[row + x] = (byte)((cells[row + x] & ~NEIGHBOURS_MASK) | neighbours);
             }
+
+            int t[] = above;
+            above = current;
+            current = below;
+            below = t;
         }
     }
+
+    /**
+     * Suma, para cada celda de una fila, las minas de esa celda y de sus
+     *  vecinas izquierda y derecha.
+     * 
+     * @param y Fila a sumar.
+     * @param sums Array donde se dejan las sumas.
+     */
+    private void sumRowMines(int y, int sums[])
+    {
+        int row = y * cols;
+        int left = 0;
+        int middle = (cells[row] & MINE) >> 4;
+
+        for (int x = 0; x < cols - 1; x++)
+        {
+            int right = (cells[row + x + 1] & MINE) >> 4;
+
+            sums[x] = left + middle + right;
+            left = middle;
+            middle = right;
+        }
+
+        sums[cols - 1] = left + middle;
+    }
     //------------------------------------------------------------------//	
 
 
@@ -142,7 +401,7 @@ public class Tablero
             {
                 // Skip (xCo, yCo), since that's no neighbour.
                 if(x != xCo || y != yCo)
-                    if(cells[x][y].getMine())   // If the neighbour contains a mine, neighbours++.
+                    if(isMine(x, y))   // If the neighbour contains a mine, neighbours++.
                         neighbours++;
             }
         }
@@ -150,6 +409,137 @@ public class Tablero
         return neighbours;
     }
 
+    //------------------------------------------------------------------//	
+    /**
+     * Descubre una celda sin bandera. Si no tiene minas alrededor, descubre
+     *  también toda su zona: las vecinas de cada 0 descubierto se descubren a su vez.
+     *  Se recorre con una cola de enteros en lugar de con recursión, así no
+     *  hay riesgo de desbordar la pila en tableros grandes.
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return Índices de las celdas descubiertas, empezando por la pulsada.
+     *  Vacío si la celda ya estaba descubierta o tenía bandera.
+     */
+    public int[] reveal(int x, int y)
+    {
+        int start = index(x, y);
+
+        if ((cells[start] & (FLAG | REVEALED)) != 0)
+            return new int[0];
+
+        if (queue == null)
+            queue = new int[cells.length];
+
+        setRevealed(start);
+        queue[0] = start;
+
+        return flood(1);
+    }
+
+    /**
+     * Chord: si la celda es un número descubierto y tiene alrededor tantas
+     *  banderas como indica, descubre el resto de sus vecinas. Todas entran
+     *  a la vez en la cola, así las zonas de las que sean 0 se abren en una
+     *  sola pasada aunque se junten.
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return Índices de las celdas descubiertas, vacío si no había nada que
+     *  descubrir o no coinciden las banderas.
+     */
+    public int[] chord(int x, int y)
+    {
+        int i = index(x, y);
+
+        if ((cells[i] & (REVEALED | MINE)) != REVEALED)
+            return new int[0];
+
+        int xMin = Math.max(x - 1, 0), xMax = Math.min(x + 1, cols - 1);
+        int yMin = Math.max(y - 1, 0), yMax = Math.min(y + 1, rows - 1);
+
+        int flagged = 0;
+
+        for (int row = yMin * cols; row <= yMax * cols; row += cols)
+            for (int j = row + xMin; j <= row + xMax; j++)
+                if ((cells[j] & FLAG) != 0)
+                    flagged++;
+
+        if (flagged != (cells[i] & NEIGHBOURS_MASK))
+            return new int[0];
+
+        if (queue == null)
+            queue = new int[cells.length];
+
+        int seeds = 0;
+
+        for (int row = yMin * cols; row <= yMax * cols; row += cols)
+        {
+            for (int j = row + xMin; j <= row + xMax; j++)
+            {
+                // A wrong flag leaves a mine among these, setRevealed counts it
+                if ((cells[j] & (FLAG | REVEALED)) == 0)
+                {
+                    setRevealed(j);
+                    queue[seeds++] = j;
+                }
+            }
+        }
+
+        return flood(seeds);
+    }
+
+    /**
+     * Abre las zonas de las celdas que ya están descubiertas al principio de
+     *  la cola: las vecinas de cada 0 descubierto se descubren a su vez.
+     * 
+     * @param seeds Número de celdas al principio de la cola, ya contadas.
+     * @return Índices de todas las celdas descubiertas, empezando por esas.
+     */
+    private int[] flood(int seeds)
+    {
+        // Every cell enters the queue once, when it's revealed, so the queue
+        // ends up holding exactly the revealed cells.
+        int head = 0;
+        int tail = seeds;
+
+        while (head < tail)
+        {
+            int i = queue[head++];
+
+            // Only zeroes (which can't be mines) open their neighbours
+            if ((cells[i] & (NEIGHBOURS_MASK | MINE)) != 0)
+                continue;
+
+            int cx = i % cols;
+            int cy = i / cols;
+
+            int xMin = Math.max(cx - 1, 0), xMax = Math.min(cx + 1, cols - 1);
+            int yMin = Math.max(cy - 1, 0), yMax = Math.min(cy + 1, rows - 1);
+
+            for (int row = yMin * cols; row <= yMax * cols; row += cols)
+            {
+                for (int j = row + xMin; j <= row + xMax; j++)
+                {
+                    // Only unrevealed cells without flag need to be revealed.
+                    if ((cells[j] & (FLAG | REVEALED)) == 0)
+                    {
+                        if (log != null)
+                            log.add(j, cells[j]);
+
+                        cells[j] |= REVEALED;
+                        queue[tail++] = j;
+                    }
+                }
+            }
+        }
+
+        // Everything after the seeds is a neighbour of a zero, so it's safe
+        revealedSafeCells += tail - seeds;
+
+        return Arrays.copyOf(queue, tail);
+    }
+
     //------------------------------------------------------------------//	
     /**
      * Método para estabilizar la posición horizontal en los bordes, es decir,
@@ -189,106 +579,41 @@ public class Tablero
 
     //-------------DATA BASE------------------------//
     /**
-     * Comprueba si hay una partida guardada en la base de datos.
+     * Comprueba si hay una partida guardada en el almacén del juego.
      * 
+     * @param storage Almacén del juego.
      * @return TRUE si la hay, FALSE en otro caso.
      */
-    public boolean checkSave()
+    public boolean checkSave(Storage storage)
     {
-        Connection connection = null;
-        Statement statement = null;
-        ResultSet resultSet = null;
-        
-        boolean saveExists = false;
-
-        try {
-            String dbURL = Game.dbPath; 
-            
-            connection = DriverManager.getConnection(dbURL); 
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("SELECT * FROM GAME_STATE");
-            
-            while(resultSet.next()) 
-            {
-                saveExists = true;
-            }
-            
-            // cleanup resources, once after processing
-            resultSet.close();
-            statement.close();
-                       
-            // and then finally close connection
-            connection.close();            
-            
-            return saveExists;
-        }
-        catch(SQLException sqlex)
-        {
-            sqlex.printStackTrace();
-            return false;
-        }        
+        return storage.hasSavedGame();
     }
     
     //--------------LOAD SAVED GAME-----------------//
     /**
-     * Carga una partida guardada desde la base de datos.
+     * Carga la última partida guardada en el almacén del juego y la borra.
+     *  La partida guardada puede tener otro tamaño que este tablero, se
+     *  devuelve en un tablero nuevo.
      * 
-     * @return Datos de la partida guardada.
+     * @param storage Almacén del juego.
+     * @return La partida guardada, null si no la hay o no se ha podido leer.
      */
-    public Pair loadSaveGame()
+    public BoardSnapshot loadSaveGame(Storage storage)
     {
-        Connection connection = null;
-        Statement statement = null;
-        ResultSet resultSet = null;
+        byte data[] = storage.loadSavedGame();
+        
+        if (data == null)
+            return null;
 
-        try {
-            String dbURL = Game.dbPath; 
-            
-            connection = DriverManager.getConnection(dbURL); 
-            
-            //--------------Load Cells State-------------------//
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("SELECT * FROM CELL");
+        //After loading, delete the saved game
+        deleteSavedGame(storage);
 
-            for(int x = 0 ; x < cols ; x++) 
-            {
-                for(int y = 0 ; y < rows ; y++) 
-                {                                        
-                    resultSet.next();
-                    
-                    cells[x][y].setContent(resultSet.getString("CONTENT"));
-                    cells[x][y].setMine(resultSet.getBoolean("MINE"));
-                    cells[x][y].setSurroundingMines(resultSet.getInt("SURROUNDING_MINES"));                    
-                }
-            }
-            
-            statement.close();
-            resultSet.close();
-            //----------------------------------------------------//
-
-            //---------------Load Game Variables-----------------//
-            statement = connection.createStatement();
-            resultSet = statement.executeQuery("SELECT * FROM GAME_STATE");
-
-            resultSet.next();
-                        
-            Pair p = new Pair(resultSet.getInt("TIMER"),resultSet.getInt("MINES"));
-            
-            //After loading, delete the saved game
-            deleteSavedGame();
-            
-            // cleanup resources, once after processing
-            resultSet.close();
-            statement.close();
-                       
-            // and then finally close connection
-            connection.close();
-
-            return p;
+        try {
+            return BoardSnapshot.fromBytes(data);
         }
-        catch(SQLException sqlex)
+        catch(IOException ex)
         {
-            sqlex.printStackTrace();
+            ex.printStackTrace();
             return null;
         }                
     }
@@ -296,99 +621,30 @@ public class Tablero
     
     //------------------------------------------------------------------------//
     /**
-     * Borra una partida salvada de la base de datos.
+     * Borra una partida salvada del almacén del juego.
+     * 
+     * @param storage Almacén del juego.
      */
-    public void deleteSavedGame()
+    public void deleteSavedGame(Storage storage)
     {
-        Connection connection = null;
-        PreparedStatement statement = null;
-        
-        try {
-            String dbURL = Game.dbPath; 
-            
-            connection = DriverManager.getConnection(dbURL); 
-
-            
-            //----------EMPTY GAME_STATE TABLE------//
-            String template = "DELETE FROM GAME_STATE"; 
-            statement = connection.prepareStatement(template);
-            statement.executeUpdate();
-            
-            //----------EMPTY CELL TABLE------//
-            template = "DELETE FROM CELL"; 
-            statement = connection.prepareStatement(template);
-            statement.executeUpdate();
-            
-            statement.close();
-            
-            // and then finally close connection
-            connection.close();            
-        }
-        catch(SQLException sqlex)
-        {
-            sqlex.printStackTrace();
-        }                
+        storage.deleteSavedGame();
     }
     
            
     //--------------SAVE GAME IN DATABASE-----------//
     /**
-     * Guarda una partida en la base de datos, incluyendo el estado de la misma
-     *  (posiciones minas, celdas descubiertas, etc.).
+     * Guarda una partida en el almacén del juego, incluyendo el estado de la misma
+     *  (posiciones minas, celdas descubiertas, etc.). La partida entera va en
+     *  un solo bloque, en el formato binario de {@link BoardSnapshot}.
      * 
-     * @param timer Número de segundos de la partida actual.
+     * @param storage Almacén del juego.
+     * @param timer Milisegundos de la partida actual.
      * @param mines Número de minas de la partida actual.
+     * @return Milisegundos que ha tardado en guardar, -1 si ha habido algún error.
      */
-    public void saveGame(int timer, int mines)
+    public long saveGame(Storage storage, int timer, int mines)
     {
-        Connection connection = null;
-        PreparedStatement statement = null;
-        
-        try {
-            String dbURL = Game.dbPath; 
-            
-            connection = DriverManager.getConnection(dbURL); 
-
-            
-            //--------------INSERT DATA INTO CELL TABLE-----------//            
-            String template = "INSERT INTO CELL (CONTENT, MINE, SURROUNDING_MINES) values (?,?,?)";
-            statement = connection.prepareStatement(template);
-
-            for(int x = 0 ; x < cols ; x++) 
-            {
-                for(int y = 0 ; y < rows ; y++) 
-                {
-                    statement.setString(1, cells[x][y].getContent());
-                    statement.setBoolean(2, cells[x][y].getMine());
-                    statement.setInt(3, (int)cells[x][y].getSurroundingMines());                    
-
-                    statement.executeUpdate();
-                }
-            }
-            //--------------------------------------------------//
-
-            
-            //--------------------SAVE GAME STATE----------------------//
-            template = "INSERT INTO GAME_STATE (TIMER,MINES) values (?,?)";
-            statement = connection.prepareStatement(template);
-            
-            statement.setInt(1, timer);
-            statement.setInt(2, mines);
-
-            statement.executeUpdate();
-            
-            //---------------------------------------------------------//
-            
-            statement.close();
-            
-            // and then finally close connection
-            connection.close();            
-        }
-        catch(SQLException sqlex)
-        {
-            sqlex.printStackTrace();
-        }
-        
+        return storage.saveGame(new BoardSnapshot(this, timer, mines).toBytes());
     }
     
     
@@ -416,13 +672,36 @@ public class Tablero
     }
 
     /**
-     * Getter de las celdas de la partida.
+     * Getter de una celda de la partida. La celda devuelta es una vista sobre
+     *  el tablero, por lo que sus cambios se reflejan en él.
      * 
-     * @return Las celdas de la partida.
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return La celda de la partida.
      */
-    public Cell[][] getCells()
+    public Cell getCell(int x, int y)
     {
-        return cells;
+        return new Cell(this, index(x, y));
+    }
+    
+    /**
+     * Getter de la semilla con la que se colocaron las minas.
+     * 
+     * @return La semilla del tablero.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+    
+    /**
+     * Getter de la celda de salida, que no tiene minas alrededor.
+     * 
+     * @return Índice de la celda, -1 si el tablero no tiene.
+     */
+    public int getStartCell()
+    {
+        return startCell;
     }
     
     /**
@@ -451,13 +730,417 @@ public class Tablero
      */
     public void resetBoard()
     {
-        for(int x = 0 ; x < cols ; x++) 
+        for(int i = 0 ; i < cells.length ; i++) 
         {
-            for(int y = 0 ; y < rows ; y++) 
-            {
-                cells[x][y].setContent("");                        
-            }
+            cells[i] &= ~(FLAG | REVEALED);
+        }
+
+        revealedSafeCells = flags = correctFlags = revealedMines = 0;
+
+        if (log != null)
+            log.clear();
+    }
+    
+    
+    //-----------------------------UNDO-----------------------------//
+    /**
+     * Empieza a apuntar los cambios para poder deshacerlos, o deja de hacerlo.
+     * 
+     * @param log Registro donde apuntarlos, o null para no apuntarlos.
+     */
+    public void setMoveLog(MoveLog log)
+    {
+        this.log = log;
+    }
+
+    /**
+     * Getter del registro de cambios.
+     * 
+     * @return El registro, o null si no se apuntan los cambios.
+     */
+    public MoveLog getMoveLog()
+    {
+        return log;
+    }
+
+    /**
+     * Cierra la jugada actual en el registro de cambios: lo que cambie desde
+     *  ahora se deshará por separado.
+     */
+    public void markMove()
+    {
+        if (log != null)
+            log.mark();
+    }
+
+    /**
+     * Deshace la última jugada, dejando sus celdas como estaban.
+     * 
+     * @return Índices de las celdas cambiadas, vacío si no hay nada que deshacer.
+     */
+    public int[] undo()
+    {
+        if (log == null || !log.canUndo())
+            return new int[0];
+
+        int move = log.undo();
+        int start = log.start(move), end = log.end(move);
+        int changed[] = new int[end - start];
+
+        // Backwards, so a cell changed twice ends with its first value
+        for (int e = end - 1; e >= start; e--)
+        {
+            int i = log.getCell(e);
+
+            writeCell(i, log.swap(e, cells[i]));
+            changed[end - 1 - e] = i;
+        }
+
+        return changed;
+    }
+
+    /**
+     * Rehace la última jugada deshecha.
+     * 
+     * @return Índices de las celdas cambiadas, vacío si no hay nada que rehacer.
+     */
+    public int[] redo()
+    {
+        if (log == null || !log.canRedo())
+            return new int[0];
+
+        int move = log.redo();
+        int start = log.start(move), end = log.end(move);
+        int changed[] = new int[end - start];
+
+        for (int e = start; e < end; e++)
+        {
+            int i = log.getCell(e);
+
+            writeCell(i, log.swap(e, cells[i]));
+            changed[e - start] = i;
         }
+
+        return changed;
+    }
+    
+    
+    //-----------------------GAME STATE-----------------------------//
+    /**
+     * Comprueba si la partida se ha ganado. No recorre el tablero, usa los
+     *  contadores que se actualizan con cada cambio de las celdas.
+     * 
+     * @param flagsRequired TRUE si además hay que tener todas las minas con bandera,
+     *  FALSE si basta con descubrir todas las celdas sin mina.
+     * @return TRUE si se ha ganado, FALSE si no.
+     */
+    public boolean isFinished(boolean flagsRequired)
+    {
+        if (revealedMines > 0 || revealedSafeCells != cells.length - placedMines)
+            return false;
+
+        return !flagsRequired || correctFlags == placedMines;
+    }
+
+    /**
+     * Comprueba si la partida se ha perdido, es decir, si hay alguna mina descubierta.
+     * 
+     * @return TRUE si se ha perdido, FALSE si no.
+     */
+    public boolean isLost()
+    {
+        return revealedMines > 0;
+    }
+
+    /**
+     * Getter del número de celdas sin mina descubiertas.
+     * 
+     * @return El número de celdas sin mina descubiertas.
+     */
+    public int getRevealedSafeCells()
+    {
+        return revealedSafeCells;
+    }
+
+    /**
+     * Getter del número de banderas puestas.
+     * 
+     * @return El número de banderas puestas.
+     */
+    public int getFlags()
+    {
+        return flags;
+    }
+
+    /**
+     * Getter del número de banderas bien puestas (sobre una mina).
+     * 
+     * @return El número de banderas bien puestas.
+     */
+    public int getCorrectFlags()
+    {
+        return correctFlags;
+    }
+
+    /**
+     * Cambia el valor de una celda manteniendo al día los contadores de la partida.
+     * 
+     * @param i Índice de la celda.
+     * @param value Nuevo valor de la celda.
+     */
+    private void setCell(int i, int value)
+    {
+        if (log != null)
+            log.add(i, cells[i]);
+
+        writeCell(i, value);
+    }
+
+    /**
+     * Cambia el valor de una celda sin apuntarlo en el registro de cambios.
+     * 
+     * @param i Índice de la celda.
+     * @param value Nuevo valor de la celda.
+     */
+    private void writeCell(int i, int value)
+    {
+        count(cells[i], -1);
+        cells[i] = (byte)value;
+        count(value, 1);
+    }
+
+    /**
+     * Suma o resta a los contadores de la partida lo que aporta el valor de una celda.
+     * 
+     * @param value Valor de la celda.
+     * @param delta 1 para sumarlo, -1 para restarlo.
+     */
+    private void count(int value, int delta)
+    {
+        boolean mine = (value & MINE) != 0;
+        boolean flag = (value & FLAG) != 0;
+
+        if (mine)
+        {
+            placedMines += delta;
+
+            if ((value & REVEALED) != 0)
+                revealedMines += delta;
+            if (flag)
+                correctFlags += delta;
+        }
+        else if ((value & REVEALED) != 0)
+        {
+            revealedSafeCells += delta;
+        }
+
+        if (flag)
+            flags += delta;
+    }
+    
+    
+    //-----------------------CELL STATE-----------------------------//
+    /**
+     * Calcula el índice de una celda a partir de sus coordenadas.
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return Índice de la celda.
+     */
+    public int index(int x, int y)
+    {
+        return y * cols + x;
+    }
+    
+    /**
+     * Comprueba si una celda tiene mina.
+     * 
+     * @param i Índice de la celda.
+     * @return TRUE si tiene mina, FALSE si no la tiene.
+     */
+    public boolean isMine(int i)
+    {
+        return (cells[i] & MINE) != 0;
+    }
+
+    /**
+     * Comprueba si una celda tiene mina.
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return TRUE si tiene mina, FALSE si no la tiene.
+     */
+    public boolean isMine(int x, int y)
+    {
+        return isMine(index(x, y));
+    }
+    
+    /**
+     * Comprueba si una celda tiene bandera.
+     * 
+     * @param i Índice de la celda.
+     * @return TRUE si tiene bandera, FALSE si no la tiene.
+     */
+    public boolean isFlagged(int i)
+    {
+        return (cells[i] & FLAG) != 0;
+    }
+
+    /**
+     * Comprueba si una celda tiene bandera.
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return TRUE si tiene bandera, FALSE si no la tiene.
+     */
+    public boolean isFlagged(int x, int y)
+    {
+        return isFlagged(index(x, y));
+    }
+    
+    /**
+     * Comprueba si una celda está descubierta.
+     * 
+     * @param i Índice de la celda.
+     * @return TRUE si está descubierta, FALSE si no lo está.
+     */
+    public boolean isRevealed(int i)
+    {
+        return (cells[i] & REVEALED) != 0;
+    }
+
+    /**
+     * Comprueba si una celda está descubierta.
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return TRUE si está descubierta, FALSE si no lo está.
+     */
+    public boolean isRevealed(int x, int y)
+    {
+        return isRevealed(index(x, y));
+    }
+    
+    /**
+     * Getter del número de minas adyacentes a una celda.
+     * 
+     * @param i Índice de la celda.
+     * @return El número de minas adyacentes.
+     */
+    public int getSurroundingMines(int i)
+    {
+        return cells[i] & NEIGHBOURS_MASK;
+    }
+
+    /**
+     * Getter del número de minas adyacentes a una celda.
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return El número de minas adyacentes.
+     */
+    public int getSurroundingMines(int x, int y)
+    {
+        return getSurroundingMines(index(x, y));
+    }
+    
+    /**
+     * Setter para guardar si una celda tiene o no una mina.
+     * 
+     * @param i Índice de la celda.
+     * @param mine TRUE si tiene mina, FALSE si no la tiene.
+     */
+    public void setMine(int i, boolean mine)
+    {
+        if (mine)
+            setCell(i, cells[i] | MINE);
+        else
+            setCell(i, cells[i] & ~MINE);
+    }
+    
+    /**
+     * Setter del número de minas adyacentes a una celda.
+     * 
+     * @param i Índice de la celda.
+     * @param surroundingMines El número de minas adyacentes (de 0 a 8).
+     */
+    public void setSurroundingMines(int i, int surroundingMines)
+    {
+        cells[i] = (byte)((cells[i] & ~NEIGHBOURS_MASK) | (surroundingMines & NEIGHBOURS_MASK));
+    }
+    
+    /**
+     * Descubre una sola celda, quitando la bandera si la tuviera.
+     * 
+     * @param i Índice de la celda.
+     */
+    public void setRevealed(int i)
+    {
+        setCell(i, (cells[i] & ~FLAG) | REVEALED);
+    }
+    
+    /**
+     * Pone o quita la bandera de una celda sin descubrir.
+     * 
+     * @param i Índice de la celda.
+     * @param flag TRUE para ponerla, FALSE para quitarla.
+     */
+    public void setFlag(int i, boolean flag)
+    {
+        if (flag)
+            setCell(i, cells[i] | FLAG);
+        else
+            setCell(i, cells[i] & ~FLAG);
+    }
+    
+    /**
+     * Getter del contenido textual de una celda (ver {@link Cell#getContent()}).
+     *  No crea cadenas nuevas.
+     * 
+     * @param i Índice de la celda.
+     * @return El contenido textual de la celda.
+     */
+    public String getContent(int i)
+    {
+        int c = cells[i];
+        
+        if ((c & REVEALED) != 0)
+            return (c & MINE) != 0 ? "M" : NUMBERS[c & NEIGHBOURS_MASK];
+        else if ((c & FLAG) != 0)
+            return "F";
+        else
+            return "";
+    }
+
+    /**
+     * Getter del contenido textual de una celda (ver {@link Cell#getContent()}).
+     * 
+     * @param x Posición horizontal de la celda.
+     * @param y Posición vertical de la celda.
+     * @return El contenido textual de la celda.
+     */
+    public String getContent(int x, int y)
+    {
+        return getContent(index(x, y));
+    }
+    
+    /**
+     * Setter del contenido textual de una celda (ver {@link Cell#setContent(String)}).
+     *  Cualquier valor distinto de "", "F" y "M" se toma como descubierta.
+     * 
+     * @param i Índice de la celda.
+     * @param content El contenido a asignar.
+     */
+    public void setContent(int i, String content)
+    {
+        int value = cells[i] & ~(FLAG | REVEALED);
+        
+        if (content == null || content.isEmpty())
+            setCell(i, value);
+        else if (content.equals("F"))
+            setCell(i, value | FLAG);
+        else
+            setCell(i, value | REVEALED);
     }
     
 }
@@ -2,6 +2,7 @@ package minesweeper;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import javax.swing.border.Border;
 import javax.swing.border.EtchedBorder;
 
@@ -13,18 +14,9 @@ import javax.swing.border.EtchedBorder;
 public class UI extends JFrame
 {
     /**
-     * Botones que se usarán para pulsar sobre ellos.
+     * Componente que pinta el tablero y sobre el que se pulsa.
      */
-    private JButton[][] buttons;
-    
-    /**
-     * Número de filas del tablero.
-     */
-    private int rows;
-    /**
-     * Número de columnas del tablero.
-     */
-    private int cols;
+    private BoardView boardView;
     
     /**
      * Texto para las minas restantes.
@@ -40,17 +32,21 @@ public class UI extends JFrame
      */
     private JLabel timePassedLabel;    
     /**
-     * Temporizador usado para controlar el tiempo.
+     * Reloj de la partida.
      */
-    private Thread timer;
+    private final GameClock clock = new GameClock();
     /**
-     * Tiempo transcurrido (en segundos).
+     * Temporizador que refresca el tiempo en la ventana mientras el reloj está en marcha.
      */
-    private int timePassed;
+    private Timer refreshTimer;
     /**
-     * Booleando que indica si el tiempo está parado (TRUE) o no (FALSE).
+     * Segundos que se muestran ahora, para no cambiar el texto si no hace falta.
      */
-    private boolean stopTimer;
+    private long shownSeconds = -1;
+    /**
+     * Milisegundos entre cada refresco del tiempo en la ventana.
+     */
+    private static final int REFRESH_DELAY = 100;
     
     /**
      * Título.
@@ -74,24 +70,6 @@ public class UI extends JFrame
      */
     private int FRAME_LOC_Y = 50;
 
-    /**
-     * Icono de una mina explotada.
-     */
-    private Icon redMine;
-    /**
-     * Icono de una mina no explotada.
-     */
-    private Icon mine;
-    /**
-     * Icono de una bandera.
-     */
-    private Icon flag;
-    /**
-     * Icono de un valor textual.
-     */
-    private Icon tile;
-    
-    
     /**
      * Barra de menú.
      */
@@ -108,6 +86,22 @@ public class UI extends JFrame
      * Opción de menú para mostrar las estadísticas.
      */
     private JMenuItem statistics;
+    /**
+     * Opción de menú para ver la probabilidad de mina de cada casilla.
+     */
+    private JCheckBoxMenuItem probabilities;
+    /**
+     * Opción de menú para jugar partidas que se resuelven sin tener que adivinar.
+     */
+    private JCheckBoxMenuItem noGuess;
+    /**
+     * Opción de menú para deshacer la última jugada.
+     */
+    private JMenuItem undo;
+    /**
+     * Opción de menú para rehacer la última jugada deshecha.
+     */
+    private JMenuItem redo;
     /**
      * Opción de menú para salir.
      */
@@ -118,17 +112,10 @@ public class UI extends JFrame
     /**
      * Constructor.
      * 
-     * @param r Numero de filas.
-     * @param c Numero de columnas.
-     * @param m Numero de minas. 
+     * @param board Tablero de la partida.
      */
-    public UI(int r, int c, int m)
+    public UI(Tablero board)
     {                
-        this.rows = r;
-        this.cols = c;
-        
-        buttons = new JButton [rows][cols];
-
         // Set frame
         setSize(FRAME_WIDTH, FRAME_HEIGHT);
         setTitle(FRAME_TITLE);
@@ -136,32 +123,19 @@ public class UI extends JFrame
                
         // The layout of the frame:
 
-        JPanel gameBoard;        
+        JScrollPane gameBoard;        
         JPanel tmPanel;        
         JPanel scorePanel;
         
         //----------------GAME BOARD---------------------//
-        // Build the "gameBoard".
-        gameBoard = new JPanel();
-        gameBoard.setLayout(new GridLayout(rows,cols,0,0));
-        
-        for( int y=0 ; y<rows ; y++ ) 
-        {
-            for( int x=0 ; x<cols ; x++ ) 
-            {
-                // Set button text.
-                buttons[x][y] = new JButton("");
-
-                // Set button name (x,y).
-                buttons[x][y].setName(Integer.toString(x) + "," + Integer.toString(y));
-                buttons[x][y].setFont(new Font("Serif", Font.BOLD, 24));
-                
-                buttons[x][y].setBorder(BorderFactory.createLineBorder(Color.black, 1, true));
-
-                // Add this button to the gameboard.
-                gameBoard.add(buttons[x][y]);
-            }
-        }
+        // Build the "gameBoard", a single component painting every cell.
+        boardView = new BoardView();
+        boardView.setBoard(board);
+        
+        gameBoard = new JScrollPane(boardView);
+        gameBoard.setBorder(null);
+        gameBoard.setOpaque(false);
+        gameBoard.getViewport().setOpaque(false);
         //-----------------------------------------------//
                 
                 
@@ -188,8 +162,7 @@ public class UI extends JFrame
         timePassedPanel.add(timePassedLabel, BorderLayout.CENTER);
         timePassedPanel.setOpaque(false);
         
-        this.timePassed = 0;
-        this.stopTimer = true;
+        this.refreshTimer = new Timer(REFRESH_DELAY, (ActionEvent e) -> showTimePassed());
 
         
         JPanel minesPanel = new JPanel();
@@ -204,7 +177,7 @@ public class UI extends JFrame
         minesLabel.setForeground(Color.white);
         
         minesLabel.setOpaque(true);
-        setMines(m);
+        setMines(board.getNumberOfMines());
         
         JLabel mT = new JLabel("", SwingConstants.CENTER);
         mT.setIcon(new ImageIcon(getClass().getResource("/resources/mine.png")));
@@ -231,14 +204,26 @@ public class UI extends JFrame
          
         newGame = new JMenuItem("   Nuevo juego");
         statistics = new JMenuItem("   Estadisticas");
+        probabilities = new JCheckBoxMenuItem("   Probabilidades");
+        noGuess = new JCheckBoxMenuItem("   Sin adivinar");
+        undo = new JMenuItem("   Deshacer");
+        redo = new JMenuItem("   Rehacer");
         exit = new JMenuItem("   Salir");
 
         newGame.setName("Nuevo juego");
         statistics.setName("Estadisticas");
+        probabilities.setName("Probabilidades");
+        noGuess.setName("Sin adivinar");
+        undo.setName("Deshacer");
+        redo.setName("Rehacer");
         exit.setName("Salir");
 
         gameMenu.add(newGame);
+        gameMenu.add(undo);
+        gameMenu.add(redo);
         gameMenu.add(statistics);
+        gameMenu.add(probabilities);
+        gameMenu.add(noGuess);
         gameMenu.add(exit);
         
         menuBar.add(gameMenu);                        
@@ -280,47 +265,18 @@ public class UI extends JFrame
      */
     public void startTimer()
     {        
-        stopTimer = false;
-        
-        timer = new Thread() {
-                @Override
-                public void run()
-                {
-                    while(!stopTimer)
-                    {
-                        timePassed++;
-
-                        // Update the time passed label.
-                        timePassedLabel.setText("  " + timePassed + "  ");
-
-                        // Wait 1 second.
-                        try{
-                            sleep(1000); 
-                        }
-                        catch(InterruptedException ex){}
-                    }
-                }
-        };                
-
-       timer.start();
+        clock.start();
+        refreshTimer.start();
     }
 
     /**
-     * Método que para el temporizador de tiempo.
+     * Método que para el temporizador de tiempo. Se puede seguir con {@link #startTimer()}.
      */
     public void interruptTimer()
     {
-        stopTimer = true;
-                
-        try 
-        {
-            if (timer!= null)
-                timer.join();
-        } 
-        catch (InterruptedException ex) 
-        {
-
-        }        
+        clock.pause();
+        refreshTimer.stop();
+        showTimePassed();
     }
     
     /**
@@ -328,82 +284,67 @@ public class UI extends JFrame
      */
     public void resetTimer()
     {
-        timePassed = 0;
-        timePassedLabel.setText("  " + timePassed + "  ");        
+        clock.reset();
+        showTimePassed();
     }
 
     /**
-     * Método para mostrar el tiempo pasado en la ventana.
+     * Método para cambiar el tiempo pasado, al cargar una partida.
      * 
-     * @param t Entero con el tiempo pasado.
+     * @param millis Milisegundos pasados.
      */
-    public void setTimePassed(int t)
+    public void setTimePassedMillis(long millis)
     {
-        timePassed = t;
-        timePassedLabel.setText("  " + timePassed + "  ");                
+        clock.setElapsedMillis(millis);
+        showTimePassed();
     }
     
-    //-----------------------------------------------------------//
     /**
-     * Método que inicia el juego gráficamente, es decir: pone las casillas en
-     * modo oculto y las activa todas.
+     * Muestra en la ventana los segundos que lleva el reloj.
      */
-    public void initGame()
+    private void showTimePassed()
     {
-        hideAll();
-        enableAll();
+        long seconds = clock.getElapsedMillis() / 1000;
+        
+        if (seconds != shownSeconds)
+        {
+            shownSeconds = seconds;
+            timePassedLabel.setText("  " + seconds + "  ");
+        }
     }
     
-    //------------------HELPER FUNCTIONS-----------------------//
+    //-----------------------------------------------------------//
     /**
-     * Método que activa las casillas para que se les pueda pulsar en ellas.
+     * Método que inicia el juego gráficamente, es decir: pone las casillas en
+     * modo oculto.
      */
-    public void enableAll()
+    public void initGame()
     {
-        for( int x=0 ; x<cols ; x++ ) 
-        {
-            for( int y=0 ; y<rows ; y++ ) 
-            {
-                buttons[x][y].setEnabled(true);
-            }
-        }
+        boardView.setShowSolution(false);
     }
-
+    
     /**
-     * Método que desactiva las casillas para que NO se les pueda pulsar en ellas.
+     * Método que muestra el tablero con la solución.
      */
-    public void disableAll()
+    public void showSolution()
     {
-        for( int x=0 ; x<cols ; x++ ) 
-        {
-            for( int y=0 ; y<rows ; y++ ) 
-            {
-                buttons[x][y].setEnabled(false);
-            }
-        }
+        boardView.setShowSolution(true);
     }
-
-
+    
     /**
-     * Método que oculta todas las casillas, mostrandolas en modo inicial.
+     * Método para mostrar otro tablero, al empezar una partida nueva.
+     * 
+     * @param board El tablero a mostrar.
      */
-    public void hideAll()
+    public void setBoard(Tablero board)
     {
-        for( int x=0 ; x<cols ; x++ ) 
-        {
-            for( int y=0 ; y<rows ; y++ ) 
-            {
-                buttons[x][y].setText("");                
-                buttons[x][y].setBackground(new Color(0,103,200));
-                buttons[x][y].setIcon(tile);                
-            }
-        }
+        boardView.setBoard(board);
     }
 
     
     //---------------SET LISTENERS--------------------------//
     /**
-     * Método que prepara los botones diciendoles que controlador los va ha atender.
+     * Método que prepara el tablero y el menú diciendoles que controlador los va ha atender.
      * 
      * @param game Es el controlador que los atenderá.
      */
@@ -411,45 +352,76 @@ public class UI extends JFrame
     {
         addWindowListener(game);
     
-        // Set listeners for all buttons in the grid in gameBoard
-        for( int x=0 ; x<cols ; x++ ) 
-        {
-            for( int y=0 ; y<rows ; y++ ) 
-            {
-                buttons[x][y].addMouseListener(game);
-            }
-        }
+        // Set listener for the cells in gameBoard
+        boardView.addMouseListener(game);
         
         // Set listeners for menu items in menu bar
        newGame.addActionListener(game);
        statistics.addActionListener(game);
+       probabilities.addActionListener(game);
+       noGuess.addActionListener(game);
+       undo.addActionListener(game);
+       redo.addActionListener(game);
        exit.addActionListener(game);
 
        newGame.setAccelerator(KeyStroke.getKeyStroke('N', Toolkit.getDefaultToolkit ().getMenuShortcutKeyMask()));
        exit.setAccelerator(KeyStroke.getKeyStroke('Q', Toolkit.getDefaultToolkit ().getMenuShortcutKeyMask()));
        statistics.setAccelerator(KeyStroke.getKeyStroke('S', Toolkit.getDefaultToolkit ().getMenuShortcutKeyMask()));       
+       probabilities.setAccelerator(KeyStroke.getKeyStroke('P', Toolkit.getDefaultToolkit ().getMenuShortcutKeyMask()));
+       undo.setAccelerator(KeyStroke.getKeyStroke('Z', Toolkit.getDefaultToolkit ().getMenuShortcutKeyMask()));
+       redo.setAccelerator(KeyStroke.getKeyStroke('Y', Toolkit.getDefaultToolkit ().getMenuShortcutKeyMask()));
     }
     
     
     //-----------------GETTERS AND SETTERS--------------------//
     /**
-     * Getter para pedir el array de botones.
+     * Getter para saber si hay que mostrar la probabilidad de mina de cada casilla.
      * 
-     * @return El array de botones.
+     * @return TRUE si está marcada la opción del menú.
      */
-    public JButton[][] getButtons()
+    public boolean isShowingProbabilities()
     {
-        return buttons;
+        return probabilities.isSelected();
+    }
+
+    /**
+     * Getter para saber si los tableros nuevos tienen que poder terminarse sin adivinar.
+     * 
+     * @return TRUE si está marcada la opción del menú.
+     */
+    public boolean isNoGuess()
+    {
+        return noGuess.isSelected();
+    }
+    
+    /**
+     * Getter para pedir el componente del tablero.
+     * 
+     * @return El componente del tablero.
+     */
+    public BoardView getBoardView()
+    {
+        return boardView;
     }
     
     /**
      * Getter para saber el tiempo que ha pasado.
      * 
-     * @return El tiempo que ha pasado.
+     * @return El tiempo que ha pasado, en segundos.
      */
     public int getTimePassed()
     {
-        return timePassed;
+        return (int)(clock.getElapsedMillis() / 1000);
+    }    
+    
+    /**
+     * Getter para saber el tiempo que ha pasado, con precisión de milisegundos.
+     * 
+     * @return El tiempo que ha pasado, en milisegundos.
+     */
+    public long getTimePassedMillis()
+    {
+        return clock.getElapsedMillis();
     }    
 
 
@@ -513,117 +485,6 @@ public class UI extends JFrame
         return mines;
     }
             
-    //--------------------Related to Icons----------------------------//
-    /**
-     * Método para redimensionar una imágen de un icono.
-     * 
-     * @param icon La imágen del icono a redimensionar.
-     * @param resizedWidth Ancho de la imagen del icono a redimensionar.
-     * @param resizedHeight Alto de la imagen del icono a redimensionar.
-     * @return La imagen del icono redimensionado.
-     */
-    private static Icon resizeIcon(ImageIcon icon, int resizedWidth, int resizedHeight) 
-    {
-        Image img = icon.getImage();  
-        Image resizedImage = img.getScaledInstance(resizedWidth, resizedHeight,  java.awt.Image.SCALE_SMOOTH);  
-        return new ImageIcon(resizedImage);
-    }    
-    
-    /**
-     * Método para cargar los iconos desde los archivos del proyecto.
-     */
-    public void setIcons()
-    {
-       //---------------------Set Icons-----------------------------//
-
-        int bOffset = buttons[0][1].getInsets().left;
-        int bWidth = buttons[0][1].getWidth();
-        int bHeight = buttons[0][1].getHeight();
-        
-        ImageIcon d;
-        
-        d = new ImageIcon(getClass().getResource("/resources/redmine.png"));                
-        redMine =   resizeIcon(d, bWidth - bOffset, bHeight - bOffset);        
-
-        d = new ImageIcon(getClass().getResource("/resources/mine.png"));                
-        mine =   resizeIcon(d, bWidth - bOffset, bHeight - bOffset);        
-        
-        d = new ImageIcon(getClass().getResource("/resources/flag.png"));                
-        flag =   resizeIcon(d, bWidth - bOffset, bHeight - bOffset);        
-        
-        d = new ImageIcon(getClass().getResource("/resources/tile.png"));                
-        tile =   resizeIcon(d, bWidth - bOffset, bHeight - bOffset);        
-                
-        //-------------------------------------------------------//
-        
-    }
-    
-    /**
-     * Getter para pedir el icono de una mina.
-     * 
-     * @return El icono de una mina.
-     */
-    public Icon getIconMine()
-    {
-        return mine;
-    }
-
-    /**
-     * Getter para pedir el icono de una mina explotada.
-     * 
-     * @return El icono de una mina explotada.
-     */
-    public Icon getIconRedMine()
-    {
-        return redMine;
-    }
-    
-    /**
-     * Getter para pedir el icono de una bandera.
-     * 
-     * @return El icono de una bandera.
-     */
-    public Icon getIconFlag()
-    {
-        return flag;
-    }
-    
-    /**
-     * Getter para pedir el icono de una casilla sin pulsar.
-     * 
-     * @return El icono de una casilla sin pulsar.
-     */
-    public Icon getIconTile()
-    {
-        return tile;       
-    }        
-    
-    
-    //---------------------------------------------------------------------//
-    /**
-     * Método que asigna los colores de fondo según sea el valor del texto.
-     * 
-     * @param b JButton a asignar.
-     */
-    public void setTextColor(JButton b)
-    {
-        if (b.getText().equals("1"))
-            b.setForeground(Color.blue);
-        else if (b.getText().equals("2"))
-            b.setForeground(new Color(76,153,0));
-        else if (b.getText().equals("3"))
-            b.setForeground(Color.red);
-        else if (b.getText().equals("4"))
-            b.setForeground(new Color(153,0,0));
-        else if (b.getText().equals("5"))
-            b.setForeground(new Color(153,0,153));
-        else if (b.getText().equals("6"))
-            b.setForeground(new Color(96,96,96));
-        else if (b.getText().equals("7"))
-            b.setForeground(new Color(0,0,102));
-        else if (b.getText().equals("8"))
-            b.setForeground(new Color(153,0,76));        
-    }
     //------------------------------------------------------------------------//
     
     